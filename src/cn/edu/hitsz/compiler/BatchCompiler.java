@@ -0,0 +1,272 @@
+package cn.edu.hitsz.compiler;
+
+import cn.edu.hitsz.compiler.asm.AssemblyGenerator;
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.IRTranslator;
+import cn.edu.hitsz.compiler.parser.ProductionCollector;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.ParsingTable;
+import cn.edu.hitsz.compiler.parser.table.TableCache;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+import cn.edu.hitsz.compiler.utils.IREmulator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * 批量编译多个源文件
+ * <br>
+ * 码点文件, 语法文件与 LR 分析表只读取/构造一次, 之后只读地由所有工作线程共享; 每个源文件则在线程池中各自独立地编译,
+ * 拥有自己的 {@link CompilationContext}, 输出与 {@link Main} 相同的一组文件, 放在输出目录下以源文件命名的子目录中.
+ * <br>
+ * 用法: {@code BatchCompiler [-j 线程数] [-o 输出目录] <源文件|目录|@文件列表>...}
+ * <ul>
+ *     <li>目录: 编译其中 (包括子目录中) 的所有文件;</li>
+ *     <li>@文件列表: 该文件每行一个源文件路径;</li>
+ *     <li>线程数默认为处理器个数, 输出目录默认为 data/out/batch.</li>
+ * </ul>
+ * 每个源文件的编译结果按输入的顺序打印, 任何一个文件编译失败时以非零状态退出.
+ */
+public final class BatchCompiler {
+    public static void main(String[] args) {
+        var threads = Runtime.getRuntime().availableProcessors();
+        var outputRoot = Paths.get(DEFAULT_OUTPUT_ROOT);
+        final var sources = new ArrayList<Source>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-j" -> threads = Integer.parseInt(args[++i]);
+                    case "-o" -> outputRoot = Paths.get(args[++i]);
+                    default -> collectSources(args[i], sources);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            // -j 或 -o 缺少参数, 或线程数不是数字
+            exitWithUsage();
+        }
+
+        if (sources.isEmpty() || threads <= 0) {
+            exitWithUsage();
+        }
+
+        final var compiler = new BatchCompiler(TableCache.loadOrGenerate(FilePathConfig.LR_TABLE_CACHE_PATH), threads);
+        final var begin = System.nanoTime();
+        final var results = compiler.compileAll(sources, outputRoot);
+        final var elapsed = (System.nanoTime() - begin) / 1e6;
+
+        var failed = 0;
+        for (final var result : results) {
+            if (result.error() == null) {
+                System.out.printf("OK   %s (%.2f ms)%n", result.source(), result.millis());
+            } else {
+                failed++;
+                System.out.printf("FAIL %s: %s%n", result.source(), result.error());
+            }
+        }
+        System.out.printf("%d compiled, %d failed, %.2f ms with %d threads%n", results.size() - failed, failed, elapsed, threads);
+
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 一个待编译的源文件
+     *
+     * @param path 源文件路径
+     * @param name 输出子目录的名字
+     */
+    public record Source(Path path, String name) {
+    }
+
+    /**
+     * 一个源文件的编译结果
+     *
+     * @param source 源文件路径
+     * @param millis 编译耗时 (毫秒)
+     * @param error  失败的原因, 成功时为 null
+     */
+    public record Result(Path source, double millis, String error) {
+    }
+
+    /**
+     * @param table   所有工作线程共享的分析表
+     * @param threads 工作线程数
+     */
+    public BatchCompiler(ParsingTable table, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+
+        // 在分发任务前完成所有共享数据的初始化, 工作线程之后只会读取它们
+        TokenKind.loadTokenKinds();
+        GrammarInfo.getBeginProduction();
+        this.table = table;
+        this.threads = threads;
+    }
+
+    /**
+     * @param table   所有工作线程共享的分析表, 会被编译为 {@link CompiledLRTable}
+     * @param threads 工作线程数
+     */
+    public BatchCompiler(LRTable table, int threads) {
+        this(CompiledLRTable.compile(table), threads);
+    }
+
+    /**
+     * 在线程池中编译所有源文件
+     *
+     * @param sources    源文件
+     * @param outputRoot 输出目录, 每个源文件的结果放在其下以 {@link Source#name()} 命名的子目录中
+     * @return 按输入顺序排列的编译结果
+     */
+    public List<Result> compileAll(List<Source> sources, Path outputRoot) {
+        final var names = new HashMap<String, Path>();
+        for (final var source : sources) {
+            final var previous = names.putIfAbsent(source.name(), source.path());
+            if (previous != null) {
+                throw new RuntimeException("Sources %s and %s would share the output directory %s".formatted(
+                    previous, source.path(), source.name()));
+            }
+        }
+
+        final var executor = Executors.newFixedThreadPool(threads);
+        try {
+            final var futures = new ArrayList<Future<Result>>();
+            for (final var source : sources) {
+                futures.add(executor.submit(() -> compile(source.path(), outputRoot.resolve(source.name()))));
+            }
+
+            final var results = new ArrayList<Result>();
+            for (final var future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while compiling", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 编译单个源文件, 与 {@link Main} 的流程相同
+     *
+     * @param source    源文件
+     * @param outputDir 输出目录
+     * @return 编译结果, 编译中抛出的异常会被记在结果中而不会传播出去
+     */
+    public Result compile(Path source, Path outputDir) {
+        final var begin = System.nanoTime();
+        try {
+            Files.createDirectories(outputDir);
+
+            final var context = CompilationContext.create();
+            final var symbolTable = context.getSymbolTable();
+            final var lexer = new LexicalAnalyzer(symbolTable);
+            lexer.loadFile(source.toString());
+            lexer.run();
+            lexer.dumpTokens(output(outputDir, FilePathConfig.TOKEN_PATH));
+            symbolTable.dumpIdentifiers(output(outputDir, FilePathConfig.OLD_SYMBOL_TABLE));
+
+            final var parser = new SyntaxAnalyzer(symbolTable);
+            parser.loadTokens(lexer.getTokens());
+            parser.loadLRTable(table);
+            final var productionCollector = new ProductionCollector(GrammarInfo.getBeginProduction());
+            parser.registerObserver(productionCollector);
+            final var translator = new IRTranslator(context);
+            parser.loadSemanticActions(translator.getActions());
+            parser.run();
+
+            productionCollector.dumpToFile(output(outputDir, FilePathConfig.PARSER_PATH));
+            symbolTable.dumpTable(output(outputDir, FilePathConfig.NEW_SYMBOL_TABLE));
+            final var instructions = translator.getIR();
+            translator.dumpIR(output(outputDir, FilePathConfig.INTERMEDIATE_CODE_PATH));
+
+            final var emulator = IREmulator.load(instructions);
+            FileUtils.writeFile(output(outputDir, FilePathConfig.EMULATE_RESULT),
+                emulator.execute().map(Objects::toString).orElse("No return value"));
+
+            final var asmGenerator = new AssemblyGenerator();
+            asmGenerator.loadIR(instructions);
+            asmGenerator.run();
+            asmGenerator.dump(output(outputDir, FilePathConfig.ASSEMBLY_LANGUAGE_PATH));
+
+            return new Result(source, (System.nanoTime() - begin) / 1e6, null);
+        } catch (IOException | RuntimeException e) {
+            return new Result(source, (System.nanoTime() - begin) / 1e6, Objects.toString(e.getMessage(), e.toString()));
+        }
+    }
+
+    /**
+     * @return 与 {@link Main} 的某个输出文件同名的, 位于 outputDir 中的文件路径
+     */
+    private static String output(Path outputDir, String defaultPath) {
+        return outputDir.resolve(Paths.get(defaultPath).getFileName()).toString();
+    }
+
+    private static void exitWithUsage() {
+        System.err.println("Usage: BatchCompiler [-j threads] [-o output-dir] <source|directory|@list>...");
+        System.exit(2);
+    }
+
+    /**
+     * 把命令行中的一个参数展开为源文件
+     */
+    private static void collectSources(String argument, List<Source> sources) {
+        if (argument.startsWith("@")) {
+            for (final var line : FileUtils.readLines(argument.substring(1))) {
+                if (!line.isBlank()) {
+                    collectSources(line.strip(), sources);
+                }
+            }
+            return;
+        }
+
+        final var path = Paths.get(argument);
+        if (Files.isDirectory(path)) {
+            // 以相对于该目录的路径命名, 这样不同子目录中的同名文件不会冲突
+            try (final Stream<Path> files = Files.walk(path)) {
+                files.filter(Files::isRegularFile).sorted()
+                    .forEach(file -> sources.add(new Source(file, nameOf(path.relativize(file)))));
+            } catch (IOException e) {
+                throw new RuntimeException("IO Exception on listing " + path, e);
+            }
+        } else {
+            sources.add(new Source(path, nameOf(path.getFileName())));
+        }
+    }
+
+    /**
+     * @return 去掉扩展名, 并把目录分隔符换成下划线后的路径
+     */
+    private static String nameOf(Path relative) {
+        final var text = relative.toString().replace(relative.getFileSystem().getSeparator(), "_");
+        final var dot = text.lastIndexOf('.');
+        return dot > 0 ? text.substring(0, dot) : text;
+    }
+
+    private static final String DEFAULT_OUTPUT_ROOT = "data/out/batch";
+
+    private final ParsingTable table;
+    private final int threads;
+}
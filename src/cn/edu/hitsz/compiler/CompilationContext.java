@@ -0,0 +1,54 @@
+package cn.edu.hitsz.compiler;
+
+import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+/**
+ * 一次编译的上下文
+ * <br>
+ * 一次编译中会变化的状态 (符号表及其标识符池, 临时变量的编号) 都归属于各自的上下文, 而不再放在静态变量中,
+ * 因此同一个 JVM 中可以同时进行多次编译, 每次编译的结果也与单独运行时完全相同.
+ * <br>
+ * 码点与文法则是所有编译共享的不可变数据: 它们只在第一次创建上下文时读取一次并安全地发布给所有线程 (见
+ * {@link TokenKind#loadTokenKinds()} 与 {@link cn.edu.hitsz.compiler.parser.table.GrammarInfo}), 之后创建上下文的开销只有一个空的符号表.
+ * <br>
+ * 上下文本身不是线程安全的, 一次编译应当只在一个线程中进行.
+ */
+public final class CompilationContext {
+    /**
+     * @return 一个新的编译上下文, 必要时先读取码点文件
+     */
+    public static CompilationContext create() {
+        TokenKind.loadTokenKinds();
+        return new CompilationContext(new SymbolTable());
+    }
+
+    /**
+     * @return 本次编译的符号表
+     */
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * @return 本次编译中的一个新临时变量, 编号从 0 开始递增
+     */
+    public IRVariable newTemp() {
+        return IRVariable.temp(tempCount++);
+    }
+
+    /**
+     * @return 本次编译中已经产生的临时变量个数
+     */
+    public int getTempCount() {
+        return tempCount;
+    }
+
+    private CompilationContext(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    private final SymbolTable symbolTable;
+    private int tempCount = 0;
+}
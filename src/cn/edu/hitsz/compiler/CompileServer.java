@@ -0,0 +1,448 @@
+package cn.edu.hitsz.compiler;
+
+import cn.edu.hitsz.compiler.asm.AssemblyGenerator;
+import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.IRTranslator;
+import cn.edu.hitsz.compiler.parser.IncrementalParser;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.ParsingTable;
+import cn.edu.hitsz.compiler.parser.table.TableCache;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+import cn.edu.hitsz.compiler.utils.IREmulator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.StreamSupport;
+
+/**
+ * 常驻的编译服务
+ * <br>
+ * 每次运行 {@link Main} 都要付出 JVM 启动, 读取码点与文法, 构造 (或读取) 分析表的开销, 而且代码总是在解释执行或刚刚开始 JIT 编译.
+ * 该服务只在启动时做一次这些工作, 之后常驻内存, 对每个请求只创建一个新的 {@link CompilationContext} 并复用已经编译好的分析表,
+ * 整条流水线也在多次请求中被 JIT 充分优化.
+ * <br>
+ * 用法: {@code CompileServer [--socket 路径] [-j 线程数] [--warmup 次数]}. 默认从标准输入读请求并向标准输出写响应;
+ * 指定 --socket 时则在该路径上监听 Unix 域套接字, 每个连接在线程池中独立处理, 进程收到终止信号时停止监听并删除套接字文件.
+ * --warmup 会在开始服务前把 {@link FilePathConfig#SRC_CODE_PATH} 编译若干次以预热 JIT.
+ * <br>
+ * 协议以行为单位, 请求有:
+ * <pre>
+ * compile 行数      后接该行数的源代码
+ * edit 位置 删除的字符数 行数
+ *                   后接该行数的插入文本 (各行以换行符连接, 最后一行之后没有换行符), 修改本会话中的源程序并编译之
+ * stats             各请求耗时的统计
+ * quit              结束会话
+ * </pre>
+ * 每个会话的源程序一开始为空. edit 由 {@link IncrementalParser} 增量地完成词法与语法分析, 适合编辑器在每次按键后重新编译.
+ * <br>
+ * 对 compile 与 edit 的响应为:
+ * <pre>
+ * ok 耗时(微秒)
+ * tokens 行数       后接词法单元
+ * ir 行数           后接中间代码
+ * asm 行数          后接汇编代码
+ * result 模拟执行 IR 的结果
+ * end
+ * </pre>
+ * 出错时响应 {@code error 原因} 与 {@code end}. 每个请求至多 {@value #MAX_LINE_COUNT} 行, {@value #MAX_REQUEST_CHARS} 个字符,
+ * 超出的请求同样以 error 响应, 会话继续. stats 的响应为一行 {@code stats count=... mean=... p50=... p90=... p99=... max=...}
+ * (单位均为微秒) 与 {@code end}.
+ */
+public final class CompileServer {
+    public static void main(String[] args) throws IOException {
+        String socketPath = null;
+        var threads = Runtime.getRuntime().availableProcessors();
+        var warmup = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--socket" -> socketPath = args[++i];
+                case "-j" -> threads = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        final var server = new CompileServer(CompiledLRTable.compile(TableCache.loadOrGenerate(FilePathConfig.LR_TABLE_CACHE_PATH)));
+        if (warmup > 0) {
+            final var source = String.join("\n", FileUtils.readLines(FilePathConfig.SRC_CODE_PATH));
+            for (int i = 0; i < warmup; i++) {
+                server.compile(source);
+            }
+        }
+
+        if (socketPath == null) {
+            server.serve(
+                new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+            );
+        } else {
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            server.listen(socketPath, threads);
+        }
+    }
+
+    /**
+     * 一次编译的输出
+     *
+     * @param tokens 词法单元
+     * @param ir     中间代码
+     * @param asm    汇编代码的各行
+     * @param result 模拟执行 IR 的结果
+     */
+    public record Output(List<String> tokens, List<String> ir, List<String> asm, String result) {
+    }
+
+    /**
+     * @param table 所有请求共享的分析表
+     */
+    public CompileServer(ParsingTable table) {
+        this.table = table;
+    }
+
+    /**
+     * 编译一段源代码, 不读写任何文件
+     *
+     * @param source 源代码
+     * @return 编译的输出
+     */
+    public Output compile(String source) {
+        final var context = CompilationContext.create();
+        final var lexer = new LexicalAnalyzer(context.getSymbolTable());
+        lexer.loadString(source);
+        lexer.run();
+
+        final var parser = new SyntaxAnalyzer(context.getSymbolTable());
+        parser.loadTokens(lexer.getTokens());
+        parser.loadLRTable(table);
+        final var translator = new IRTranslator(context);
+        parser.loadSemanticActions(translator.getActions());
+        parser.run();
+
+        return output(lexer.getTokens(), translator.getIR());
+    }
+
+    /**
+     * 编译增量分析中的源程序, 结果 (包括出错时抛出的异常) 与用 {@link #compile(String)} 编译同一源程序相同
+     *
+     * @param session 已经分析过当前源程序的增量分析器
+     * @return 编译的输出
+     */
+    public Output compile(IncrementalParser session) {
+        final var context = CompilationContext.create();
+        final var tokens = session.getTokens(context.getSymbolTable());
+
+        final var parser = new SyntaxAnalyzer(context.getSymbolTable());
+        final var translator = new IRTranslator(context);
+        parser.loadSemanticActions(translator.getActions());
+        session.replay(parser, tokens);
+
+        return output(tokens, translator.getIR());
+    }
+
+    private static Output output(Iterable<Token> tokens, List<Instruction> instructions) {
+        final var result = IREmulator.load(instructions).execute().map(Objects::toString).orElse("No return value");
+
+        final var asmGenerator = new AssemblyGenerator();
+        asmGenerator.loadIR(instructions);
+        asmGenerator.run();
+
+        return new Output(
+            StreamSupport.stream(tokens.spliterator(), false).map(Token::toString).toList(),
+            instructions.stream().map(Instruction::toString).toList(),
+            asmGenerator.getAssemblyCode().lines().toList(),
+            result
+        );
+    }
+
+    /**
+     * 处理一个会话中的所有请求, 直到读到 quit 或输入结束
+     *
+     * @param in  请求
+     * @param out 响应
+     */
+    public void serve(BufferedReader in, Writer out) throws IOException {
+        final var session = new IncrementalParser(table);
+        String line;
+        while ((line = in.readLine()) != null) {
+            final var words = line.strip().split(" ");
+            switch (words[0]) {
+                case "" -> {
+                    continue;
+                }
+                case "quit" -> {
+                    return;
+                }
+                case "stats" -> out.write("stats " + stats.summary() + "\n");
+                case "compile" -> respondToCompile(words, in, out);
+                case "edit" -> respondToEdit(words, in, out, session);
+                default -> out.write("error Unknown command: " + words[0] + "\n");
+            }
+            out.write("end\n");
+            out.flush();
+        }
+    }
+
+    private void respondToCompile(String[] words, BufferedReader in, Writer out) throws IOException {
+        final int lineCount;
+        try {
+            lineCount = Integer.parseInt(words[1]);
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            out.write("error Expect: compile <line count>\n");
+            return;
+        }
+        if (lineCount < 0 || lineCount > MAX_LINE_COUNT) {
+            out.write("error Line count must be between 0 and " + MAX_LINE_COUNT + "\n");
+            return;
+        }
+
+        final var lines = readLines(in, lineCount);
+        if (lines == null) {
+            out.write("error Request is longer than " + MAX_REQUEST_CHARS + " characters\n");
+            return;
+        }
+
+        final var source = new StringBuilder();
+        for (final var sourceLine : lines) {
+            source.append(sourceLine).append('\n');
+        }
+        respond(out, () -> compile(source.toString()));
+    }
+
+    private void respondToEdit(String[] words, BufferedReader in, Writer out, IncrementalParser session) throws IOException {
+        final int offset;
+        final int removedLength;
+        final int lineCount;
+        try {
+            offset = Integer.parseInt(words[1]);
+            removedLength = Integer.parseInt(words[2]);
+            lineCount = Integer.parseInt(words[3]);
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            out.write("error Expect: edit <offset> <removed length> <line count>\n");
+            return;
+        }
+        if (lineCount < 0 || lineCount > MAX_LINE_COUNT) {
+            out.write("error Line count must be between 0 and " + MAX_LINE_COUNT + "\n");
+            return;
+        }
+
+        final var lines = readLines(in, lineCount);
+        if (lines == null) {
+            out.write("error Request is longer than " + MAX_REQUEST_CHARS + " characters\n");
+            return;
+        }
+
+        final var text = String.join("\n", lines);
+        respond(out, () -> {
+            try {
+                session.edit(offset, removedLength, text);
+            } catch (IndexOutOfBoundsException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                // 词法错误时完整编译同样在任何语义动作之前失败; 语法错误时完整编译则会先执行出错之前的语义动作,
+                // 其中的语义错误 (比如使用未声明的变量) 会先被报告, 因此仍要重放这些动作
+                if (!session.isLexed()) {
+                    throw e;
+                }
+            }
+            return compile(session);
+        });
+    }
+
+    /**
+     * 读取请求后接的各行. 总长度超过 {@link #MAX_REQUEST_CHARS} 时仍会读完这些行以免之后的请求错位, 但不再保存其内容
+     *
+     * @return 读到的各行 (不含换行符), 超出长度限制时为 null
+     */
+    private static List<String> readLines(BufferedReader in, int count) throws IOException {
+        final var lines = new ArrayList<String>(Math.min(count, 1024));
+        final var line = new StringBuilder();
+        long length = 0;
+        for (int i = 0; i < count; i++) {
+            var c = in.read();
+            if (c == -1) {
+                throw new IOException("Input ended in the middle of a request");
+            }
+
+            line.setLength(0);
+            while (c != -1 && c != '\n') {
+                if (++length <= MAX_REQUEST_CHARS) {
+                    line.append((char) c);
+                }
+                c = in.read();
+            }
+            if (++length <= MAX_REQUEST_CHARS) {
+                // 与 readLine 一样接受以 "\r\n" 结尾的行
+                final var end = line.length() > 0 && line.charAt(line.length() - 1) == '\r' ? line.length() - 1 : line.length();
+                lines.add(line.substring(0, end));
+            }
+        }
+        return length <= MAX_REQUEST_CHARS ? lines : null;
+    }
+
+    /**
+     * 执行一次编译并写出其响应, 编译中抛出的异常作为 error 响应
+     */
+    private void respond(Writer out, Supplier<Output> compilation) throws IOException {
+        final var begin = System.nanoTime();
+        final Output output;
+        try {
+            output = compilation.get();
+        } catch (RuntimeException e) {
+            out.write("error " + Objects.toString(e.getMessage(), e.toString()).replace('\n', ' ') + "\n");
+            return;
+        }
+        final var micros = (System.nanoTime() - begin) / 1000;
+        stats.record(micros);
+
+        out.write("ok " + micros + "\n");
+        writeSection(out, "tokens", output.tokens());
+        writeSection(out, "ir", output.ir());
+        writeSection(out, "asm", output.asm());
+        out.write("result " + output.result() + "\n");
+    }
+
+    private static void writeSection(Writer out, String name, List<String> lines) throws IOException {
+        out.write(name + " " + lines.size() + "\n");
+        for (final var line : lines) {
+            out.write(line);
+            out.write('\n');
+        }
+    }
+
+    /**
+     * 在 Unix 域套接字上监听, 每个连接作为一个会话在线程池中处理, 直到 {@link #stop()} 被调用或监听线程被中断
+     *
+     * @param path    套接字路径, 已存在的文件会被删除, 停止监听后也会被删除
+     * @param threads 同时处理的连接数
+     */
+    public void listen(String path, int threads) throws IOException {
+        final var address = UnixDomainSocketAddress.of(path);
+        Files.deleteIfExists(Paths.get(path));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (final var serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            listening = serverChannel;
+            serverChannel.bind(address);
+            System.err.println("Listening on " + path);
+            while (true) {
+                final SocketChannel channel;
+                try {
+                    channel = serverChannel.accept();
+                } catch (ClosedChannelException e) {
+                    // 套接字被 stop() 关闭, 或监听线程被中断
+                    break;
+                }
+                executor.execute(() -> serveChannel(channel));
+            }
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(Paths.get(path));
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * 停止 {@link #listen(String, int)}: 不再接受新的连接, 中断正在处理的会话, 并等到套接字文件被删除后才返回.
+     * 可以在其他线程 (比如关闭钩子) 中调用, 尚未开始监听时什么也不做
+     */
+    public void stop() {
+        final var channel = listening;
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+            stopped.await();
+        } catch (IOException e) {
+            System.err.println("Failed to close the socket: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 处理一个连接上的会话, 会话中的异常只影响该连接, 记录到标准错误后关闭连接
+     */
+    private void serveChannel(SocketChannel channel) {
+        try (channel) {
+            serve(
+                new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8)),
+                new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))
+            );
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Session failed: " + e);
+        }
+    }
+
+    /**
+     * 各请求耗时的统计, 可以被多个会话同时记录
+     * <br>
+     * 总数, 均值与最大值针对所有请求; 分位数则只根据最近的 {@link #WINDOW} 个请求计算, 这样长期运行时内存占用有界.
+     */
+    private static final class LatencyStats {
+        synchronized void record(long micros) {
+            window[(int) (count % WINDOW)] = micros;
+            count++;
+            total += micros;
+            max = Math.max(max, micros);
+        }
+
+        synchronized String summary() {
+            if (count == 0) {
+                return "count=0";
+            }
+
+            final var recent = Arrays.copyOf(window, (int) Math.min(count, WINDOW));
+            Arrays.sort(recent);
+            return "count=%d mean=%d p50=%d p90=%d p99=%d max=%d".formatted(
+                count, total / count, percentile(recent, 50), percentile(recent, 90), percentile(recent, 99), max);
+        }
+
+        private static long percentile(long[] sorted, int percent) {
+            final var rank = (int) Math.ceil(sorted.length * percent / 100.0) - 1;
+            return sorted[Math.max(rank, 0)];
+        }
+
+        private static final int WINDOW = 10000;
+
+        private final long[] window = new long[WINDOW];
+        private long count = 0;
+        private long total = 0;
+        private long max = 0;
+    }
+
+    // 单个请求后接的行数与字符数的上限, 避免按客户端给出的行数分配内存
+    private static final int MAX_LINE_COUNT = 1 << 20;
+    private static final int MAX_REQUEST_CHARS = 1 << 24;
+
+    private final ParsingTable table;
+    private final LatencyStats stats = new LatencyStats();
+    // 正在监听的套接字, 由 stop() 关闭; listen 的清理工作完成后 stopped 被释放
+    private volatile ServerSocketChannel listening = null;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+}
@@ -2,15 +2,12 @@ package cn.edu.hitsz.compiler;
 
 import cn.edu.hitsz.compiler.asm.AssemblyGenerator;
 import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
-import cn.edu.hitsz.compiler.lexer.TokenKind;
-import cn.edu.hitsz.compiler.parser.IRGenerator;
+import cn.edu.hitsz.compiler.parser.IRTranslator;
 import cn.edu.hitsz.compiler.parser.ProductionCollector;
-import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
 import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
 import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
-import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.parser.table.TableCache;
 import cn.edu.hitsz.compiler.parser.table.TableLoader;
-import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FilePathConfig;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 import cn.edu.hitsz.compiler.utils.IREmulator;
@@ -19,9 +16,9 @@ import java.util.Objects;
 
 public class Main {
     public static void main(String[] args) {
-        // 构建符号表以供各部分使用
-        TokenKind.loadTokenKinds();
-        final var symbolTable = new SymbolTable();
+        // 构建本次编译的上下文, 其中的符号表供各部分使用
+        final var context = CompilationContext.create();
+        final var symbolTable = context.getSymbolTable();
 
         // 词法分析
         final var lexer = new LexicalAnalyzer(symbolTable);
@@ -31,16 +28,15 @@ public class Main {
         System.out.println("Lexical Analysis Done!");
 
         final var tokens = lexer.getTokens();
-        symbolTable.dumpTable(FilePathConfig.OLD_SYMBOL_TABLE);
+        symbolTable.dumpIdentifiers(FilePathConfig.OLD_SYMBOL_TABLE);
 
 //        // 读取第三方程序构造的 LR 分析表
 //        final var tableLoader = new TableLoader();
 //        final var lrTable = tableLoader.load(FilePathConfig.LR1_TABLE_PATH);
 
          // 或使用框架自带部分直接从 grammar.txt 构造 LR 分析表
-         final var tableGenerator = new TableGenerator();
-         tableGenerator.run();
-         final var lrTable = tableGenerator.getTable();
+         // 构造出的表会被缓存下来, 只要 grammar.txt 与码点文件没有改动, 之后启动时便直接读取缓存
+         final var lrTable = TableCache.loadOrGenerate(FilePathConfig.LR_TABLE_CACHE_PATH);
          lrTable.dumpTable("data/out/lrTable.csv");
 
         // 加载 LR 分析驱动程序
@@ -52,13 +48,10 @@ public class Main {
         final var productionCollector = new ProductionCollector(GrammarInfo.getBeginProduction());
         parser.registerObserver(productionCollector);
 
-        // 加入用作语义检查的 Observer
-        final var semanticAnalyzer = new SemanticAnalyzer();
-       parser.registerObserver(semanticAnalyzer);
-
-        // 加入用作 IR 生成的 Observer
-        final var irGenerator = new IRGenerator();
-       parser.registerObserver(irGenerator);
+        // 语义检查与 IR 生成合并为同一组语义动作, 共用驱动程序维护的属性栈, 在解析过程中一遍完成
+        // (也可以像之前那样分别注册 SemanticAnalyzer 与 IRGenerator 两个 Observer, 结果相同)
+        final var translator = new IRTranslator(context);
+        parser.loadSemanticActions(translator.getActions());
 
         // 执行语法解析并在解析过程中依次调用各 Observer
         parser.run();
@@ -67,8 +60,8 @@ public class Main {
         // 各 Observer 输出结果
         productionCollector.dumpToFile(FilePathConfig.PARSER_PATH);
         symbolTable.dumpTable(FilePathConfig.NEW_SYMBOL_TABLE);
-        final var instructions = irGenerator.getIR();
-        irGenerator.dumpIR(FilePathConfig.INTERMEDIATE_CODE_PATH);
+        final var instructions = translator.getIR();
+        translator.dumpIR(FilePathConfig.INTERMEDIATE_CODE_PATH);
 
         // 模拟执行 IR 并输出结果
         final var emulator = IREmulator.load(instructions);
@@ -29,8 +29,9 @@ import java.util.Map;
 public class AssemblyGenerator {
 
     private List<Instruction> instructions;
-    private Map<String, Integer> var;
-    private Map<Integer, String> reg;
+    // IR 变量编号 -> 寄存器号, 寄存器号 -> IR 变量编号
+    private Map<Integer, Integer> var;
+    private Map<Integer, Integer> reg;
     private StringBuilder assemblyCode;
 
     public AssemblyGenerator() {
@@ -51,51 +52,58 @@ public class AssemblyGenerator {
         this.instructions = originInstructions;
     }
 
-    private int getReg(String varName) {
-        if (var.get(varName) == null) {
+    // 用于装载立即数操作数的临时寄存器, 它不对应任何 IR 变量, 故使用一个不会被 IR 变量占用的编号
+    private static final int SCRATCH_ID = Integer.MIN_VALUE;
+
+    private int getReg(IRVariable variable) {
+        return getReg(variable.getId());
+    }
+
+    private int getReg(int varId) {
+        if (var.get(varId) == null) {
             for (int i = 5; i < 8; i++) { // t0-t2
                 if (reg.get(i) == null) {
-                    var.put(varName, i);
-                    reg.put(i, varName);
+                    var.put(varId, i);
+                    reg.put(i, varId);
                     return i;
                 }
             }
             for (int i = 10; i < 18; i++) { // a0-a7
                 if (reg.get(i) == null) {
-                    var.put(varName, i);
-                    reg.put(i, varName);
+                    var.put(varId, i);
+                    reg.put(i, varId);
                     return i;
                 }
             }
             for (int i = 28; i < 32; i++) { // t3-t6
                 if (reg.get(i) == null) {
-                    var.put(varName, i);
-                    reg.put(i, varName);
+                    var.put(varId, i);
+                    reg.put(i, varId);
                     return i;
                 }
             }
             // If no free register is available, steal a register from a variable that is no longer used
-            for (Map.Entry<String, Integer> entry : var.entrySet()) {
-                String variable = entry.getKey();
+            for (Map.Entry<Integer, Integer> entry : var.entrySet()) {
+                Integer variable = entry.getKey();
                 Integer register = entry.getValue();
                 if (!isVariableUsed(variable)) {
                     var.remove(variable);
                     reg.remove(register);
-                    var.put(varName, register);
-                    reg.put(register, varName);
+                    var.put(varId, register);
+                    reg.put(register, varId);
                     return register;
                 }
             }
             throw new RuntimeException("No available register");
         } else {
-            return var.get(varName);
+            return var.get(varId);
         }
     }
 
-    private boolean isVariableUsed(String varName) {
+    private boolean isVariableUsed(int varId) {
         for (Instruction ins : instructions) {
             for (IRValue operand : ins.getOperands()) {
-                if (operand.toString().equals(varName)) {
+                if (operand instanceof IRVariable variable && variable.getId() == varId) {
                     return true;
                 }
             }
@@ -127,7 +135,6 @@ public class AssemblyGenerator {
     public void run() {
         assemblyCode.append(".text\n");
         for (Instruction ins : instructions) {
-            System.out.println(ins);
             boolean hasReturn = false;
             switch (ins.getKind()) {
                 case ADD -> generateAdd(ins);
@@ -150,9 +157,9 @@ public class AssemblyGenerator {
         if (operands.size() < 2) {
             throw new IllegalArgumentException("ADD instruction requires at least 2 operand");
         }
-        String destReg = getRegName(getReg(ins.getResult().toString()));
-        String src1 = operands.get(0).isImmediate() ? operands.get(0).toString() : getRegName(getReg(operands.get(0).toString()));
-        String src2 = operands.get(1).isImmediate() ? operands.get(1).toString() : getRegName(getReg(operands.get(1).toString()));
+        String destReg = getRegName(getReg(ins.getResult()));
+        String src1 = operands.get(0).isImmediate() ? operands.get(0).toString() : getRegName(getReg((IRVariable) operands.get(0)));
+        String src2 = operands.get(1).isImmediate() ? operands.get(1).toString() : getRegName(getReg((IRVariable) operands.get(1)));
         
         if (operands.get(0).isImmediate() && operands.get(1).isImmediate()) {
             throw new IllegalArgumentException("ADD instruction cannot have both operands as immediate values");
@@ -170,11 +177,11 @@ public class AssemblyGenerator {
         if (operands.size() < 2) {
             throw new IllegalArgumentException("SUB instruction requires at least 2 operand");
         }
-        String destReg = getRegName(getReg(ins.getResult().toString()));
-        String src1 = operands.get(0).isImmediate() ? operands.get(0).toString() : getRegName(getReg(operands.get(0).toString()));
-        String src2 = operands.get(1).isImmediate() ? operands.get(1).toString() : getRegName(getReg(operands.get(1).toString()));
+        String destReg = getRegName(getReg(ins.getResult()));
+        String src1 = operands.get(0).isImmediate() ? operands.get(0).toString() : getRegName(getReg((IRVariable) operands.get(0)));
+        String src2 = operands.get(1).isImmediate() ? operands.get(1).toString() : getRegName(getReg((IRVariable) operands.get(1)));
         if (operands.get(0).isImmediate()) {
-            String tempReg = getRegName(getReg("temp"));
+            String tempReg = getRegName(getReg(SCRATCH_ID));
             assemblyCode.append(String.format("    li %s, %s\n", tempReg, src1));
             assemblyCode.append(String.format("    sub %s, %s, %s\n", destReg, tempReg, src2));
         } else {
@@ -187,11 +194,11 @@ public class AssemblyGenerator {
         if (operands.size() < 2) {
             throw new IllegalArgumentException("MUL instruction requires at least 2 operand");
         }
-        String destReg = getRegName(getReg(ins.getResult().toString()));
-        String src1 = operands.get(0).isImmediate() ? operands.get(0).toString() : getRegName(getReg(operands.get(0).toString()));
-        String src2 = operands.get(1).isImmediate() ? operands.get(1).toString() : getRegName(getReg(operands.get(1).toString()));
+        String destReg = getRegName(getReg(ins.getResult()));
+        String src1 = operands.get(0).isImmediate() ? operands.get(0).toString() : getRegName(getReg((IRVariable) operands.get(0)));
+        String src2 = operands.get(1).isImmediate() ? operands.get(1).toString() : getRegName(getReg((IRVariable) operands.get(1)));
         if (operands.get(0).isImmediate()) {
-            String tempReg = getRegName(getReg("temp"));
+            String tempReg = getRegName(getReg(SCRATCH_ID));
             assemblyCode.append(String.format("    li %s, %s\n", tempReg, src1));
             assemblyCode.append(String.format("    mul %s, %s, %s\n", destReg, tempReg, src2));
         } else {
@@ -204,8 +211,8 @@ public class AssemblyGenerator {
         if (operands.size() < 1) {
             throw new IllegalArgumentException("MOV instruction requires at least 1 operand");
         }
-        String destReg = getRegName(getReg(ins.getResult().toString()));
-        String src = operands.get(0).isImmediate() ? operands.get(0).toString() : getRegName(getReg(operands.get(0).toString()));
+        String destReg = getRegName(getReg(ins.getResult()));
+        String src = operands.get(0).isImmediate() ? operands.get(0).toString() : getRegName(getReg((IRVariable) operands.get(0)));
         if (operands.get(0).isImmediate()) {
             assemblyCode.append(String.format("    li %s, %s\n", destReg, src));
         } else {
@@ -215,13 +222,22 @@ public class AssemblyGenerator {
 
     private void generateRet(Instruction ins) {
         List<IRValue> operands = ins.getOperands();
-        if (!operands.isEmpty()) {
-            String returnReg = getRegName(getReg(operands.get(0).toString()));
+        if (!operands.isEmpty() && operands.get(0).isImmediate()) {
+            assemblyCode.append(String.format("    li a0, %s\n", operands.get(0)));
+        } else if (!operands.isEmpty()) {
+            String returnReg = getRegName(getReg((IRVariable) operands.get(0)));
             assemblyCode.append(String.format("    mv a0, %s\n", returnReg));
         }
         // assemblyCode.append("ret\n");
     }
 
+    /**
+     * @return 生成的汇编代码
+     */
+    public String getAssemblyCode() {
+        return assemblyCode.toString();
+    }
+
     /**
      * 输出汇编代码到文件
      *
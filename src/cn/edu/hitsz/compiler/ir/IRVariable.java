@@ -1,35 +1,66 @@
 package cn.edu.hitsz.compiler.ir;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * IR 中的 "变量"
  * <br>
  * 我们允许 IR 中的变量保存一些有关源语言的信息 -- 比如它在源语言里对应的是具体的源语言变量还是源语言中的临时变量. 这些信息用一个字符串
  * name 来表示. 临时变量的 name 都是 "$[0-9]+", 而非临时变量的 name 都是 "[a-zA-Z_][a-zA-Z0-9_]*"
  * <br>
- * IR 变量的等价性由 name 唯一确定.
+ * IR 变量的等价性由其编号唯一确定: 非临时变量的编号即为其在符号表中的条目编号 (非负), 临时变量的编号则为负数.
+ * 这样比较与哈希 IR 变量时都不需要再处理名字字符串, 不同作用域中的同名变量也对应不同的条目, 不会互相混淆.
+ *
+ * @see cn.edu.hitsz.compiler.symtab.SymbolTableEntry#getId()
  */
 public class IRVariable implements IRValue {
     /**
-     * @param name 源语言中变量的名字
+     * @param entryId 源语言中变量在符号表中的条目编号
+     * @param name    源语言中变量的名字
      * @return 一个对应于源语言中具体变量的 IRVariable
      */
-    public static IRVariable named(String name) {
-        return new IRVariable(name);
+    public static IRVariable named(int entryId, String name) {
+        if (entryId < 0) {
+            throw new RuntimeException("Entry id of a named variable can NOT smaller than zero");
+        }
+
+        return new IRVariable(entryId, name);
     }
 
     /**
-     * @return 一个对应于源语言中的临时变量的新 IRVariable
+     * @return 一个对应于源语言中的临时变量的新 IRVariable, 其编号在整个程序中递增
      */
     public static IRVariable temp() {
-        return new IRVariable("$" + count++);
+        return temp(count.getAndIncrement());
+    }
+
+    /**
+     * 以给定的序号构造临时变量, 供各自为临时变量编号的调用方 (比如每次编译各自从 0 开始编号) 使用
+     *
+     * @param number 临时变量的序号, 由调用方保证在同一次编译中不重复
+     * @return 名为 "$number" 的临时变量
+     */
+    public static IRVariable temp(int number) {
+        if (number < 0) {
+            throw new RuntimeException("Number of a temp variable can NOT smaller than zero");
+        }
+
+        return new IRVariable(-number - 1, "$" + number);
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * @return 变量的编号, 非临时变量为其在符号表中的条目编号, 临时变量为负数
+     */
+    public int getId() {
+        return id;
+    }
+
     public boolean isTemp() {
-        return name.startsWith("$");
+        return id < 0;
     }
 
     public boolean isNamed() {
@@ -43,18 +74,20 @@ public class IRVariable implements IRValue {
 
     @Override
     public boolean equals(Object obj) {
-        return obj instanceof IRVariable reg && name.equals(reg.name);
+        return obj instanceof IRVariable reg && id == reg.id;
     }
 
     @Override
     public int hashCode() {
-        return name.hashCode();
+        return id;
     }
 
-    private IRVariable(String name) {
+    private IRVariable(int id, String name) {
+        this.id = id;
         this.name = name;
     }
 
+    private final int id;
     private final String name;
-    private static int count = 0;
+    private static final AtomicInteger count = new AtomicInteger();
 }
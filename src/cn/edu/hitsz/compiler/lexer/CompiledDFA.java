@@ -0,0 +1,111 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * 编译后的 DFA, 由 {@link DFA#compile()} 构造
+ * <br>
+ * 状态被编号为从 0 开始的稠密整数, 起始状态恒为 0. ASCII 字符上的转移存放在一张 {@code int[state * 128 + c]} 的稠密表中,
+ * 非 ASCII 字符上的转移则按 (状态, 字符) 打包成 long 后有序存放, 通过二分查找访问. 接受状态用一个 BitSet 表示.
+ * <br>
+ * 驱动时调用者只需持有一个 int 状态并反复调用 {@link #step(int, char)}, 整个过程不会对字符装箱, 也不会产生任何分配.
+ */
+public final class CompiledDFA {
+    /**
+     * 代表无转移 (即 DFA 卡死) 的状态编号
+     */
+    public static final int DEAD = -1;
+
+    /**
+     * 起始状态的编号
+     */
+    public static final int START = 0;
+
+    private static final int ASCII_SIZE = 128;
+
+    /**
+     * @param state  当前状态
+     * @param symbol 输入字符
+     * @return 转移到的状态, 若无对应转移则返回 {@link #DEAD}
+     */
+    public int step(int state, char symbol) {
+        if (symbol < ASCII_SIZE) {
+            return table[state * ASCII_SIZE + symbol];
+        }
+
+        final var idx = Arrays.binarySearch(fallbackKeys, pack(state, symbol));
+        return idx >= 0 ? fallbackTargets[idx] : DEAD;
+    }
+
+    /**
+     * @param state 状态编号
+     * @return 该状态是否为接受状态
+     */
+    public boolean isAccepting(int state) {
+        return state >= 0 && accepting.get(state);
+    }
+
+    /**
+     * @param name 构造 DFA 时使用的状态名
+     * @return 该状态的编号
+     * @throws RuntimeException 不存在该状态
+     */
+    public int getStateId(String name) {
+        final var id = stateIds.get(name);
+        if (id == null) {
+            throw new RuntimeException("Unknown DFA state: " + name);
+        }
+
+        return id;
+    }
+
+    /**
+     * @param state 状态编号
+     * @return 构造 DFA 时使用的状态名
+     */
+    public String getStateName(int state) {
+        return stateNames[state];
+    }
+
+    /**
+     * @return 状态总数
+     */
+    public int getStateCount() {
+        return stateNames.length;
+    }
+
+    static long pack(int state, char symbol) {
+        return ((long) state << 16) | symbol;
+    }
+
+    static int asciiIndex(int state, char symbol) {
+        return state * ASCII_SIZE + symbol;
+    }
+
+    static int tableSize(int stateCount) {
+        return stateCount * ASCII_SIZE;
+    }
+
+    static boolean isAscii(char symbol) {
+        return symbol < ASCII_SIZE;
+    }
+
+    CompiledDFA(String[] stateNames, Map<String, Integer> stateIds, int[] table,
+                long[] fallbackKeys, int[] fallbackTargets, BitSet accepting) {
+        this.stateNames = stateNames;
+        this.stateIds = stateIds;
+        this.table = table;
+        this.fallbackKeys = fallbackKeys;
+        this.fallbackTargets = fallbackTargets;
+        this.accepting = accepting;
+    }
+
+    private final String[] stateNames;
+    private final Map<String, Integer> stateIds;
+    private final int[] table;
+    private final long[] fallbackKeys;
+    private final int[] fallbackTargets;
+    private final BitSet accepting;
+}
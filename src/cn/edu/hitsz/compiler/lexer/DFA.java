@@ -4,6 +4,9 @@ import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -21,11 +24,11 @@ public class DFA {
         this.startState = startState;
         this.currentState = startState;
         this.acceptingStates = acceptingStates;
-        this.transitions = new HashMap<>();
+        this.transitions = new LinkedHashMap<>();
     }
 
     public void addTransition(String fromState, char symbol, String toState) {
-        transitions.putIfAbsent(fromState, new HashMap<>());
+        transitions.putIfAbsent(fromState, new LinkedHashMap<>());
         transitions.get(fromState).put(symbol, toState);
     }
 
@@ -49,4 +52,60 @@ public class DFA {
     public String getCurrentState() {
         return currentState;
     }
-}
\ No newline at end of file
+
+    /**
+     * 将该 DFA 编译为以 int 编号状态, 以数组存储转移的 {@link CompiledDFA}
+     * <br>
+     * 起始状态编号为 0, 其余状态按其在转移与接受状态中首次出现的顺序编号.
+     *
+     * @return 编译后的 DFA
+     */
+    public CompiledDFA compile() {
+        final var stateIds = new LinkedHashMap<String, Integer>();
+        stateIds.put(startState, CompiledDFA.START);
+        for (final var entry : transitions.entrySet()) {
+            stateIds.putIfAbsent(entry.getKey(), stateIds.size());
+            for (final var toState : entry.getValue().values()) {
+                stateIds.putIfAbsent(toState, stateIds.size());
+            }
+        }
+        for (final var state : acceptingStates) {
+            stateIds.putIfAbsent(state, stateIds.size());
+        }
+
+        final var stateCount = stateIds.size();
+        final var stateNames = stateIds.keySet().toArray(new String[0]);
+
+        final var table = new int[CompiledDFA.tableSize(stateCount)];
+        Arrays.fill(table, CompiledDFA.DEAD);
+        final var fallback = new ArrayList<long[]>();
+        for (final var entry : transitions.entrySet()) {
+            final int from = stateIds.get(entry.getKey());
+            for (final var edge : entry.getValue().entrySet()) {
+                final char symbol = edge.getKey();
+                final int to = stateIds.get(edge.getValue());
+                if (CompiledDFA.isAscii(symbol)) {
+                    table[CompiledDFA.asciiIndex(from, symbol)] = to;
+                } else {
+                    fallback.add(new long[]{CompiledDFA.pack(from, symbol), to});
+                }
+            }
+        }
+
+        // 非 ASCII 转移按键排序, 以便 step 时二分查找
+        fallback.sort((lhs, rhs) -> Long.compare(lhs[0], rhs[0]));
+        final var fallbackKeys = new long[fallback.size()];
+        final var fallbackTargets = new int[fallback.size()];
+        for (int i = 0; i < fallback.size(); i++) {
+            fallbackKeys[i] = fallback.get(i)[0];
+            fallbackTargets[i] = (int) fallback.get(i)[1];
+        }
+
+        final var accepting = new BitSet(stateCount);
+        for (final var state : acceptingStates) {
+            accepting.set(stateIds.get(state));
+        }
+
+        return new CompiledDFA(stateNames, Map.copyOf(stateIds), table, fallbackKeys, fallbackTargets, accepting);
+    }
+}
@@ -0,0 +1,350 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 增量词法分析
+ * <br>
+ * 保存上一次的源程序与词法单元序列, 其中每个词法单元除类型外还记录其在源程序中的位置 [begin, end), 以及识别它时读过的范围
+ * (见 {@link TokenScanner#lastScanExtent()}). 对源程序做一处修改后, 只需重新扫描受损的区域:
+ * <ul>
+ *     <li>读过的范围没有到达修改处的词法单元不受影响, 从第一个读到了修改处的词法单元开始重新扫描;</li>
+ *     <li>按最长匹配识别的词法单元只取决于其起始位置之后的输入, 所以一旦在修改处之后新识别出的词法单元与某个旧词法单元的起始位置重合,
+ *     其后的词法单元就与旧的完全相同 (只是位置平移), 扫描即可停止.</li>
+ * </ul>
+ * 标识符记录的是其在本对象自己的标识符池中的编号, 需要时用 {@link #getTokens(SymbolTable)} 按首次出现的顺序把它们加入另一标识符池,
+ * 这样得到的标识符池与词法单元都与对修改后的源程序完整地做一遍词法分析完全相同.
+ *
+ * @see cn.edu.hitsz.compiler.parser.IncrementalParser
+ */
+public final class IncrementalLexer {
+    /**
+     * 一次修改造成的词法单元的变化: 下标在 [from, oldTo) 中的旧词法单元被替换为 [from, newTo) 中的新词法单元,
+     * 之后的词法单元不变, 下标平移 newTo - oldTo
+     *
+     * @param from    第一个被重新识别的词法单元的下标
+     * @param oldTo   被替换的旧词法单元的结束下标 (不含)
+     * @param newTo   新词法单元的结束下标 (不含)
+     * @param changed 词法单元序列是否真的有变化; 比如只改动了空白时为 false, 此时各词法单元只是位置不同
+     */
+    public record Damage(int from, int oldTo, int newTo, boolean changed) {
+    }
+
+    public IncrementalLexer() {
+        this.idCode = TokenKind.fromString("id").getCode();
+        this.intConstCode = TokenKind.fromString("IntConst").getCode();
+    }
+
+    /**
+     * 完整地对源程序做词法分析, 丢弃之前的所有结果
+     *
+     * @param content 源程序
+     * @throws RuntimeException 遇到了无法识别的字符, 此时下一次修改会重新完整地分析
+     */
+    public void load(String content) {
+        source = content;
+        valid = false;
+        size = 0;
+        final var scanner = new StringTokenScanner(content, 0, content.length(), symbolTable);
+        while (scanNext(scanner, content)) {
+            append();
+        }
+        append();
+        valid = true;
+    }
+
+    /**
+     * 把源程序中 [offset, offset + removedLength) 的文本替换为 text, 并只重新识别受影响的词法单元
+     *
+     * @param offset        修改的起始位置
+     * @param removedLength 删去的字符数
+     * @param text          插入的文本
+     * @return 词法单元的变化
+     * @throws RuntimeException 遇到了无法识别的字符, 此时修改仍然生效, 下一次修改会重新完整地分析
+     */
+    public Damage edit(int offset, int removedLength, String text) {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > source.length()) {
+            throw new IndexOutOfBoundsException("Edit [%d, %d) out of source of length %d".formatted(
+                offset, offset + removedLength, source.length()));
+        }
+
+        final var oldSource = source;
+        final var newSource = oldSource.substring(0, offset) + text + oldSource.substring(offset + removedLength);
+        if (!valid) {
+            final var oldSize = size;
+            load(newSource);
+            return new Damage(0, oldSize, size, true);
+        }
+
+        source = newSource;
+        valid = false;
+        final var delta = text.length() - removedLength;
+        final var newEditEnd = offset + text.length();
+
+        // 第一个读到了修改处的词法单元; 各词法单元读过的范围是严格递增的
+        var from = 0;
+        var to = size - 1;
+        while (from < to) {
+            final var mid = (from + to) >>> 1;
+            if (extent[mid] > offset) {
+                to = mid;
+            } else {
+                from = mid + 1;
+            }
+        }
+
+        // 从前一个词法单元的结尾开始重新扫描, 直到与修改处之后的某个旧词法单元对齐
+        final var scanner = new StringTokenScanner(newSource, from == 0 ? 0 : end[from - 1], newSource.length(), symbolTable);
+        var scanned = 0;
+        var old = from;
+        while (true) {
+            final var more = scanNext(scanner, newSource);
+            final var tokenBegin = scratch[BEGIN];
+            if (tokenBegin >= newEditEnd) {
+                while (begin[old] + delta < tokenBegin) {
+                    old++;
+                }
+                if (begin[old] + delta == tokenBegin) {
+                    break;
+                }
+            }
+            stash(scanned++);
+            if (!more) {
+                // 修改处之后总会在 EOF 处对齐, 不会走到这里
+                old = size;
+                break;
+            }
+        }
+
+        final var changed = !sameTokens(from, old, scanned, oldSource, newSource);
+
+        // 把 old 之后未受影响的词法单元平移到位, 再放入新识别的词法单元
+        final var newSize = size - (old - from) + scanned;
+        ensureCapacity(newSize);
+        final var tail = size - old;
+        for (final var column : new int[][]{kindCode, begin, end, extent, identifierId}) {
+            System.arraycopy(column, old, column, from + scanned, tail);
+        }
+        for (int i = from + scanned; i < newSize; i++) {
+            begin[i] += delta;
+            end[i] += delta;
+            extent[i] += delta;
+        }
+        for (int i = 0; i < scanned; i++) {
+            kindCode[from + i] = stashed[i * COLUMNS + KIND];
+            begin[from + i] = stashed[i * COLUMNS + BEGIN];
+            end[from + i] = stashed[i * COLUMNS + END];
+            extent[from + i] = stashed[i * COLUMNS + EXTENT];
+            identifierId[from + i] = stashed[i * COLUMNS + IDENTIFIER];
+        }
+        size = newSize;
+        valid = true;
+
+        return new Damage(from, old, from + scanned, changed);
+    }
+
+    /**
+     * @return 当前的源程序
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return 上一次分析是否成功; 失败后的下一次修改会重新完整地分析
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * @return 词法单元个数, 包括末尾的 EOF
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getKindCode(int index) {
+        checkIndex(index);
+        return kindCode[index];
+    }
+
+    public int getBegin(int index) {
+        checkIndex(index);
+        return begin[index];
+    }
+
+    public int getEnd(int index) {
+        checkIndex(index);
+        return end[index];
+    }
+
+    /**
+     * @param index 下标
+     * @return 第 index 个词法单元, 标识符的编号是本对象的标识符池中的编号
+     */
+    public Token get(int index) {
+        checkIndex(index);
+        final var kind = TokenKind.fromCode(kindCode[index]);
+        if (kindCode[index] == idCode) {
+            return Token.identifier(kind, symbolTable.getIdentifierPool().getName(identifierId[index]), identifierId[index]);
+        }
+        if (kindCode[index] == intConstCode) {
+            return Token.normal(kind, source.substring(begin[index], end[index]));
+        }
+        return Token.simple(kind);
+    }
+
+    /**
+     * 以另一符号表的标识符编号取出所有词法单元, 并像词法分析器那样把标识符按首次出现的顺序加入该符号表的标识符池
+     *
+     * @param target 符号表, 通常是一次编译的上下文中新建的空符号表
+     * @return 所有词法单元, 以 EOF 结尾
+     */
+    public List<Token> getTokens(SymbolTable target) {
+        final var pool = symbolTable.getIdentifierPool();
+        final var targetPool = target.getIdentifierPool();
+        var simpleTokens = new Token[0];
+        final var tokens = new ArrayList<Token>(size);
+        for (int i = 0; i < size; i++) {
+            final var kind = TokenKind.fromCode(kindCode[i]);
+            if (kindCode[i] == idCode) {
+                final var name = pool.getName(identifierId[i]);
+                final var targetId = targetPool.intern(name);
+                tokens.add(Token.identifier(kind, name, targetId));
+            } else if (kindCode[i] == intConstCode) {
+                tokens.add(Token.normal(kind, source.substring(begin[i], end[i])));
+            } else {
+                // 码点 -1 (EOF) 存放在下标 0 处
+                final var slot = kindCode[i] + 1;
+                if (slot >= simpleTokens.length) {
+                    simpleTokens = Arrays.copyOf(simpleTokens, slot + 1);
+                }
+                if (simpleTokens[slot] == null) {
+                    simpleTokens[slot] = Token.simple(kind);
+                }
+                tokens.add(simpleTokens[slot]);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 识别下一个词法单元并放在 scratch 中
+     *
+     * @return 识别出的是否是 EOF 以外的词法单元
+     */
+    private boolean scanNext(TokenScanner scanner, String content) {
+        final var token = scanner.next();
+        scratch[EXTENT] = scanner.lastScanExtent();
+        if (token.getKind() == TokenKind.eof()) {
+            scratch[KIND] = TokenKind.eof().getCode();
+            scratch[BEGIN] = content.length();
+            scratch[END] = content.length();
+            scratch[IDENTIFIER] = -1;
+            return false;
+        }
+        scratch[KIND] = token.getKind().getCode();
+        scratch[BEGIN] = scanner.lastTokenBegin();
+        scratch[END] = scanner.lastTokenEnd();
+        scratch[IDENTIFIER] = token.getIdentifierId();
+        return true;
+    }
+
+    /**
+     * 把 scratch 中的词法单元追加到末尾
+     */
+    private void append() {
+        ensureCapacity(size + 1);
+        kindCode[size] = scratch[KIND];
+        begin[size] = scratch[BEGIN];
+        end[size] = scratch[END];
+        extent[size] = scratch[EXTENT];
+        identifierId[size] = scratch[IDENTIFIER];
+        size++;
+    }
+
+    /**
+     * 把 scratch 中的词法单元暂存为第 index 个新识别的词法单元
+     */
+    private void stash(int index) {
+        if ((index + 1) * COLUMNS > stashed.length) {
+            stashed = Arrays.copyOf(stashed, Math.max(stashed.length * 2, (index + 1) * COLUMNS));
+        }
+        System.arraycopy(scratch, 0, stashed, index * COLUMNS, COLUMNS);
+    }
+
+    /**
+     * @return 旧词法单元 [from, oldTo) 与暂存的 count 个新词法单元是否逐个相同
+     */
+    private boolean sameTokens(int from, int oldTo, int count, String oldSource, String newSource) {
+        if (oldTo - from != count) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            final var oldIndex = from + i;
+            final var base = i * COLUMNS;
+            if (kindCode[oldIndex] != stashed[base + KIND] || identifierId[oldIndex] != stashed[base + IDENTIFIER]) {
+                return false;
+            }
+            if (kindCode[oldIndex] == intConstCode) {
+                final var length = end[oldIndex] - begin[oldIndex];
+                if (stashed[base + END] - stashed[base + BEGIN] != length
+                    || !oldSource.regionMatches(begin[oldIndex], newSource, stashed[base + BEGIN], length)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= kindCode.length) {
+            return;
+        }
+        final var newCapacity = Math.max(kindCode.length * 2, capacity);
+        kindCode = Arrays.copyOf(kindCode, newCapacity);
+        begin = Arrays.copyOf(begin, newCapacity);
+        end = Arrays.copyOf(end, newCapacity);
+        extent = Arrays.copyOf(extent, newCapacity);
+        identifierId = Arrays.copyOf(identifierId, newCapacity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Token index %d out of bounds for size %d".formatted(index, size));
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    // scratch 与 stashed 中每个词法单元的各列
+    private static final int KIND = 0;
+    private static final int BEGIN = 1;
+    private static final int END = 2;
+    private static final int EXTENT = 3;
+    private static final int IDENTIFIER = 4;
+    private static final int COLUMNS = 5;
+
+    private final int idCode;
+    private final int intConstCode;
+    // 只用于给标识符编号, 其中的条目会随修改不断累积, 不作为任何一次编译的符号表
+    private final SymbolTable symbolTable = new SymbolTable();
+    private String source = "";
+    private boolean valid = false;
+    // 各词法单元的类型码点, 在源程序中的位置 [begin, end), 识别时读过的范围的结尾, 以及标识符编号 (不是标识符时为 -1)
+    private int[] kindCode = new int[INITIAL_CAPACITY];
+    private int[] begin = new int[INITIAL_CAPACITY];
+    private int[] end = new int[INITIAL_CAPACITY];
+    private int[] extent = new int[INITIAL_CAPACITY];
+    private int[] identifierId = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    // 刚识别出的一个词法单元
+    private final int[] scratch = new int[COLUMNS];
+    // 重新扫描时新识别出的词法单元, 每个占 COLUMNS 个 int
+    private int[] stashed = new int[16 * COLUMNS];
+}
@@ -3,18 +3,20 @@ package cn.edu.hitsz.compiler.lexer;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.StreamSupport;
 
 public class LexicalAnalyzer {
     private final SymbolTable symbolTable;
-    private String content; // 缓冲区存储输入内容
-    private final List<Token> tokens; // 存储词法分析后的Token列表
+    private TokenScanner scanner; // 从缓冲区中识别词法单元的扫描器
+    private TokenBuffer tokens; // 以紧凑形式存储词法分析后的Token序列
 
     public LexicalAnalyzer(SymbolTable symbolTable) {
         this.symbolTable = symbolTable;
-        this.tokens = new ArrayList<>();
     }
 
     /**
@@ -24,155 +26,84 @@ public class LexicalAnalyzer {
      */
     public void loadFile(String path) {
         // 词法分析前的缓冲区实现
-        // 直接读取整个文件内容作为缓冲区
-        this.content = FileUtils.readFile(path);
+        // 以固定大小的缓冲区流式读取文件, 而不是一次性把整个文件读成字符串
+        loadReader(FileUtils.openReader(path));
+    }
+
+    /**
+     * 把 ASCII/UTF-8 编码的源文件映射到内存中并直接在映射上进行词法分析, 适合非常大的输入
+     *
+     * @param path 路径
+     */
+    public void loadMappedFile(String path) {
+        this.scanner = TokenScanner.fromMappedFile(path, symbolTable);
+    }
+
+    /**
+     * 加载内存中的源程序
+     *
+     * @param content 源程序
+     */
+    public void loadString(String content) {
+        this.scanner = TokenScanner.fromString(content, symbolTable);
+    }
+
+    /**
+     * 从 Reader 中流式加载输入, Reader 会在输入耗尽后被关闭
+     *
+     * @param reader 输入
+     */
+    public void loadReader(Reader reader) {
+        this.scanner = TokenScanner.fromReader(reader, symbolTable);
+    }
+
+    /**
+     * 从 NIO 通道中按 UTF-8 流式加载输入, 通道会在输入耗尽后被关闭
+     *
+     * @param channel 输入
+     */
+    public void loadChannel(ReadableByteChannel channel) {
+        loadReader(Channels.newReader(channel, StandardCharsets.UTF_8));
     }
 
     /**
      * 执行词法分析, 准备好用于返回的 token 列表
-     * 需要维护实验一所需的符号表条目, 而得在语法分析中才能确定的符号表条目的成员可以先设置为 null
+     * 识别出的标识符只登记到符号表的标识符池中, 符号表条目要等到语义分析时在声明所在的作用域中创建
      */
     public void run() {
-        // 初始化DFA，设置状态转换
-        DFA dfa = new DFA("START", List.of("IDENTIFIER", "NUMBER", "PLUS", "MINUS", "STAR", "SLASH", "LPAREN", "RPAREN", "SEMICOLON", "ASSIGN"));
-        setupDFA(dfa);
-
-        int index = 0;
-        StringBuilder buffer = new StringBuilder();
-//        System.out.println(content);
-
-        while (index < content.length()) {
-            char currentChar = content.charAt(index);
-//            System.out.print(currentChar);
-
-            if (Character.isWhitespace(currentChar)) {
-                index++;
-                continue;
-            }
-
-            buffer.append(currentChar);
-            dfa.makeTransition(currentChar);
-
-            if (dfa.getCurrentState() == null) {
-                throw new RuntimeException("Unexpected character: " + currentChar);
-            }
-
-            switch (dfa.getCurrentState()) {
-                case "IDENTIFIER":
-                    char nextChar = (index + 1 < content.length()) ? content.charAt(index + 1) : '\0';
-                    if (!Character.isLetterOrDigit(nextChar) && nextChar != '_') {
-                        String identifier = buffer.toString();
-                        if (TokenKind.isAllowed(identifier))
-                        {
-                            tokens.add(Token.simple(identifier));
-                        }
-                        else {
-                            if (!symbolTable.has(identifier))
-                            {
-                                symbolTable.add(identifier);
-                            }
-                            tokens.add(Token.normal("id", identifier));
-                        }
-                        dfa.reset();
-                        buffer.setLength(0);
-                    }
-                    break;
-
-                case "NUMBER":
-                    char nextNumberChar = (index + 1 < content.length()) ? content.charAt(index + 1) : '\0';
-                    if (!Character.isDigit(nextNumberChar)) {
-                        tokens.add(Token.normal("IntConst", buffer.toString()));
-                        dfa.reset();
-                        buffer.setLength(0);
-                    }
-                    break;
-
-                case "SEMICOLON":
-                    tokens.add(Token.simple("Semicolon"));
-                    dfa.reset();
-                    buffer.setLength(0);
-                    break;
-
-                case "PLUS":
-                    tokens.add(Token.simple("+"));
-                    dfa.reset();
-                    buffer.setLength(0);
-                    break;
-
-                case "MINUS":
-                    tokens.add(Token.simple("-"));
-                    dfa.reset();
-                    buffer.setLength(0);
-                    break;
-
-                case "STAR":
-                    tokens.add(Token.simple("*"));
-                    dfa.reset();
-                    buffer.setLength(0);
-                    break;
-
-                case "SLASH":
-                    tokens.add(Token.simple("/"));
-                    dfa.reset();
-                    buffer.setLength(0);
-                    break;
-
-                case "LPAREN":
-                    tokens.add(Token.simple("("));
-                    dfa.reset();
-                    buffer.setLength(0);
-                    break;
-
-                case "RPAREN":
-                    tokens.add(Token.simple(")"));
-                    dfa.reset();
-                    buffer.setLength(0);
-                    break;
-
-                case "ASSIGN":
-                    tokens.add(Token.simple("="));
-                    dfa.reset();
-                    buffer.setLength(0);
-                    break;
-
-                default:
-                    break;
-            }
-
-            index++;
+        tokens = new TokenBuffer(scanner.sourceText(), symbolTable.getIdentifierPool());
+        while (scanner.scanInto(tokens)) {
+            // scanInto 会把识别出的词法单元追加到 tokens 中, 直到 EOF
         }
+    }
 
-        // 添加EOF标记
-        tokens.add(Token.eof());
+    /**
+     * 以分块并行的方式执行词法分析, 结果与 run 完全相同. 仅支持由 loadMappedFile 或 loadString 加载的输入.
+     *
+     * @see #runParallel(ForkJoinPool)
+     */
+    public void runParallel() {
+        runParallel(ForkJoinPool.commonPool());
     }
 
-    private void setupDFA(DFA dfa) {
-        // 初始化DFA的状态转换
-        dfa.addTransition("START", ';', "SEMICOLON");
-        dfa.addTransition("START", '+', "PLUS");
-        dfa.addTransition("START", '-', "MINUS");
-        dfa.addTransition("START", '*', "STAR");
-        dfa.addTransition("START", '/', "SLASH");
-        dfa.addTransition("START", '(', "LPAREN");
-        dfa.addTransition("START", ')', "RPAREN");
-        dfa.addTransition("START", '=', "ASSIGN");
-
-        // 添加标识符和数字的处理
-        for (char c = 'a'; c <= 'z'; c++) {
-            dfa.addTransition("START", c, "IDENTIFIER");
-            dfa.addTransition("IDENTIFIER", c, "IDENTIFIER");
-        }
-        for (char c = 'A'; c <= 'Z'; c++) {
-            dfa.addTransition("START", c, "IDENTIFIER");
-            dfa.addTransition("IDENTIFIER", c, "IDENTIFIER");
-        }
-        dfa.addTransition("START", '_', "IDENTIFIER");
-        dfa.addTransition("IDENTIFIER", '_', "IDENTIFIER");
+    /**
+     * 以分块并行的方式执行词法分析, 结果与 run 完全相同. 仅支持由 loadMappedFile 或 loadString 加载的输入.
+     *
+     * @param pool 执行扫描的线程池
+     */
+    public void runParallel(ForkJoinPool pool) {
+        tokens = ParallelLexer.run(scanner, symbolTable, pool);
+    }
 
-        for (char c = '0'; c <= '9'; c++) {
-            dfa.addTransition("START", c, "NUMBER");
-            dfa.addTransition("NUMBER", c, "NUMBER");
-        }
+    /**
+     * 获得按需识别词法单元的流, 用于把词法分析与语法分析流水线化. 使用该方法时不应再调用 run.
+     * <br>
+     * 若仍需要 token 文件, 可以在返回的流上挂一个 {@link TokenDumper}: {@code lexer.stream().tee(new TokenDumper(path))}
+     *
+     * @return 词法单元流
+     */
+    public TokenStream stream() {
+        return scanner;
     }
 
     /**
@@ -184,6 +115,15 @@ public class LexicalAnalyzer {
         return tokens;
     }
 
+    /**
+     * 获得词法分析的结果的紧凑表示, 保证在调用了 run 方法之后调用
+     *
+     * @return 词法单元缓冲区
+     */
+    public TokenBuffer getTokenBuffer() {
+        return tokens;
+    }
+
     public void dumpTokens(String path) {
         FileUtils.writeLines(
             path,
@@ -0,0 +1,160 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 直接在源文件的内存映射上扫描的扫描器
+ * <br>
+ * 源文件被整体映射为一个只读的 MappedByteBuffer, 扫描时逐字节读取, 不经过字符解码, 也不会把源程序复制到堆上.
+ * 由于所有合法的词法单元都只由 ASCII 字符组成, 对 ASCII/UTF-8 编码的源文件这样做是安全的: 任何非 ASCII 字节都会使 DFA 卡死.
+ * <br>
+ * 数字字面量的文本被推迟到第一次调用 {@link Token#getText()} 时才从映射中截取. 标识符则需要在词法分析时加入符号表,
+ * 因此扫描器维护了一张以映射中的字节为键的开放寻址表, 每个不同的标识符只构造一次字符串, 其后的出现都复用该字符串.
+ * <br>
+ * 单个映射最大为 2GB.
+ */
+class MappedTokenScanner extends TokenScanner {
+    /**
+     * @param path 源文件路径
+     * @return 源文件的只读内存映射
+     */
+    static ByteBuffer map(String path) {
+        return FileUtils.mapFile(path);
+    }
+
+    MappedTokenScanner(ByteBuffer buffer, int from, int to, SymbolTable symbolTable) {
+        super(symbolTable, from);
+        this.buffer = buffer;
+        this.limit = to;
+        this.source = (start, length) -> decode(start, start + length);
+    }
+
+    @Override
+    protected int sourceLength() {
+        return buffer.limit();
+    }
+
+    @Override
+    protected TokenScanner region(int from, int to, SymbolTable symbolTable) {
+        return new MappedTokenScanner(buffer, from, to, symbolTable);
+    }
+
+    @Override
+    protected boolean ensure(int pos) {
+        return pos < limit;
+    }
+
+    @Override
+    protected char charAt(int pos) {
+        return (char) (buffer.get(pos) & 0xFF);
+    }
+
+    @Override
+    protected String text(int begin, int end) {
+        return decode(begin, end);
+    }
+
+    @Override
+    protected String identifierText(int begin, int end) {
+        // 开放寻址, 线性探测
+        final var hash = hash(begin, end);
+        int slot = hash & (slots.length - 1);
+        while (slots[slot] != EMPTY) {
+            final var name = names[slots[slot]];
+            if (hashes[slots[slot]] == hash && matches(name, begin, end)) {
+                return name;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+
+        final var name = decode(begin, end);
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        names[count] = name;
+        hashes[count] = hash;
+        slots[slot] = count;
+        count++;
+
+        if (count * 2 > slots.length) {
+            rehash();
+        }
+        return name;
+    }
+
+    @Override
+    public SourceText sourceText() {
+        return source;
+    }
+
+    @Override
+    protected Token literalToken(TokenKind kind, int begin, int end) {
+        return Token.lazy(kind, source, begin, end - begin);
+    }
+
+    private String decode(int begin, int end) {
+        // 词法单元只包含 ASCII 字符, 逐字节转为 char 即可
+        final var chars = new char[end - begin];
+        for (int i = begin; i < end; i++) {
+            chars[i - begin] = (char) (buffer.get(i) & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    private int hash(int begin, int end) {
+        // 与 String.hashCode 相同的多项式哈希
+        int hash = 0;
+        for (int i = begin; i < end; i++) {
+            hash = 31 * hash + (buffer.get(i) & 0xFF);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean matches(String name, int begin, int end) {
+        if (name.length() != end - begin) {
+            return false;
+        }
+        for (int i = begin; i < end; i++) {
+            if (name.charAt(i - begin) != (buffer.get(i) & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, EMPTY);
+        for (int id = 0; id < count; id++) {
+            int slot = hashes[id] & (slots.length - 1);
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = id;
+        }
+    }
+
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private final SourceText source;
+
+    // 已见过的标识符, slots 中存放其在 names 中的下标
+    private int[] slots = filled(INITIAL_CAPACITY * 2);
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int count = 0;
+
+    private static int[] filled(int size) {
+        final var array = new int[size];
+        Arrays.fill(array, EMPTY);
+        return array;
+    }
+}
@@ -0,0 +1,103 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 分块并行的词法分析
+ * <br>
+ * 源程序是一串以分号结尾的语句, 而分号只可能作为单独的词法单元出现 (源语言中没有字符串与注释), 因此紧跟在分号后的位置一定是
+ * 词法单元的边界. 我们在这些位置上把源程序切成若干块, 在 ForkJoinPool 上分别扫描, 再按顺序把各块的词法单元拼接起来.
+ * <br>
+ * 每块扫描时使用自己的符号表 (与标识符池), 扫描完成后按块的顺序依次合并到总的符号表中. 每块内的标识符也按首次出现的顺序合并,
+ * 因此合并结果, 包括各标识符的编号, 都与顺序扫描完全一致.
+ */
+final class ParallelLexer {
+    /**
+     * 每块的最小长度 (字符数), 过小的块得不偿失
+     */
+    static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * @param scanner     可随机访问的输入上的扫描器, 其自身不会被推进
+     * @param symbolTable 总的符号表
+     * @param pool        执行扫描的线程池
+     * @return 拼接好的词法单元, 以 EOF 结尾
+     */
+    static TokenBuffer run(TokenScanner scanner, SymbolTable symbolTable, ForkJoinPool pool) {
+        final var length = scanner.sourceLength();
+        if (length < 0) {
+            throw new RuntimeException("Parallel lexing requires a random-access source");
+        }
+
+        final var boundaries = split(scanner, length, pool.getParallelism() * 4);
+
+        final var tasks = new ArrayList<ForkJoinTask<Chunk>>();
+        for (int i = 0; i + 1 < boundaries.size(); i++) {
+            final var from = boundaries.get(i);
+            final var to = boundaries.get(i + 1);
+            tasks.add(pool.submit(() -> scanChunk(scanner, from, to)));
+        }
+
+        final var result = new TokenBuffer(scanner.sourceText(), symbolTable.getIdentifierPool());
+        for (final var task : tasks) {
+            final var chunk = task.join();
+            // 先合并符号表, 得到块内标识符编号到总编号的映射, 再丢掉每块末尾的 EOF 后拼接
+            final var identifierIds = symbolTable.mergeFrom(chunk.symbolTable());
+            result.addAll(chunk.tokens(), 0, chunk.tokens().size() - 1, identifierIds);
+        }
+        result.add(TokenKind.eof().getCode(), 0, 0);
+
+        return result;
+    }
+
+    private record Chunk(TokenBuffer tokens, SymbolTable symbolTable) {
+    }
+
+    private static Chunk scanChunk(TokenScanner scanner, int from, int to) {
+        final var symbolTable = new SymbolTable();
+        final var chunkScanner = scanner.region(from, to, symbolTable);
+        final var tokens = new TokenBuffer(scanner.sourceText(), symbolTable.getIdentifierPool());
+        while (chunkScanner.scanInto(tokens)) {
+            // scanInto 会把识别出的词法单元追加到 tokens 中, 直到 EOF
+        }
+        return new Chunk(tokens, symbolTable);
+    }
+
+    /**
+     * 在分号之后切分输入
+     *
+     * @param scanner     扫描器
+     * @param length      输入长度
+     * @param targetCount 期望的块数
+     * @return 各块的边界, 首尾分别为 0 与 length
+     */
+    private static ArrayList<Integer> split(TokenScanner scanner, int length, int targetCount) {
+        final var chunkCount = Math.max(1, Math.min(targetCount, length / MIN_CHUNK_SIZE));
+        final var chunkSize = length / chunkCount;
+
+        final var boundaries = new ArrayList<Integer>();
+        boundaries.add(0);
+        int pos = 0;
+        for (int i = 1; i < chunkCount; i++) {
+            pos = Math.max(pos, i * chunkSize);
+            while (pos < length && scanner.charAt(pos) != ';') {
+                pos++;
+            }
+            if (pos >= length) {
+                break;
+            }
+            pos++;
+            boundaries.add(pos);
+        }
+        boundaries.add(length);
+
+        return boundaries;
+    }
+
+    private ParallelLexer() {
+    }
+}
@@ -0,0 +1,122 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * 以固定大小的字符缓冲区从 Reader 中流式读取输入的扫描器
+ * <br>
+ * 缓冲区中只保留当前词法单元起始位置之后的字符. 缓冲区读尽时, 先把尚未识别完的词法单元 (比如横跨缓冲区边界的标识符或数字)
+ * 搬到缓冲区开头, 再从 Reader 中读入新的字符填满剩余空间. 只有当单个词法单元比整个缓冲区还长时缓冲区才会扩容,
+ * 因此内存占用与输入的总长度无关.
+ * <br>
+ * 由于读过的输入会被丢弃, 通过 {@link #scanInto(TokenBuffer)} 识别时, 数字字面量的文本会被首尾相接地另存下来,
+ * 标识符的文本则可以从标识符池中取得, 其余词法单元不占用任何文本空间.
+ */
+class ReaderTokenScanner extends TokenScanner {
+    ReaderTokenScanner(Reader reader, int bufferSize, SymbolTable symbolTable) {
+        super(symbolTable);
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+    }
+
+    @Override
+    protected boolean ensure(int pos) {
+        while (pos - base >= limit) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected char charAt(int pos) {
+        return buffer[pos - base];
+    }
+
+    @Override
+    protected String text(int begin, int end) {
+        return new String(buffer, begin - base, end - begin);
+    }
+
+    @Override
+    public SourceText sourceText() {
+        return (start, length) -> texts.substring(start, start + length);
+    }
+
+    @Override
+    protected int textPosition(int begin, int end) {
+        // 已经读过的输入会被丢弃, 所以把数字字面量的文本另存到 texts 中
+        final var position = texts.length();
+        texts.append(buffer, begin - base, end - begin);
+        return position;
+    }
+
+    @Override
+    public void close() {
+        if (reader == null) {
+            return;
+        }
+
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on closing source", e);
+        } finally {
+            reader = null;
+        }
+    }
+
+    /**
+     * 向缓冲区中读入更多字符
+     *
+     * @return 输入是否还有剩余
+     */
+    private boolean fill() {
+        if (reader == null) {
+            return false;
+        }
+
+        // 丢弃当前词法单元之前的字符, 把剩下的搬到缓冲区开头
+        final var keep = tokenStart - base;
+        if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+            limit -= keep;
+            base = tokenStart;
+        }
+
+        // 单个词法单元就占满了整个缓冲区, 只能扩容
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        try {
+            final var read = reader.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                close();
+                return false;
+            }
+            limit += read;
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on reading source", e);
+        }
+    }
+
+    private Reader reader;
+    private char[] buffer;
+    // buffer[0] 对应的绝对位置
+    private int base = 0;
+    // buffer 中有效字符的个数
+    private int limit = 0;
+    // 由 scanInto 识别出的数字字面量的文本, 首尾相接地存放在一起
+    private final StringBuilder texts = new StringBuilder();
+}
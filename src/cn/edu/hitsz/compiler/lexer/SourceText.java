@@ -0,0 +1,15 @@
+package cn.edu.hitsz.compiler.lexer;
+
+/**
+ * 可以按位置截取文本的源程序, 用于推迟词法单元文本的构造
+ *
+ * @see Token#lazy(TokenKind, SourceText, int, int)
+ */
+public interface SourceText {
+    /**
+     * @param start  起始位置
+     * @param length 长度
+     * @return 源程序中该区间的文本
+     */
+    String slice(int start, int length);
+}
@@ -0,0 +1,49 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+/**
+ * 在内存中的字符串上扫描的扫描器
+ * <br>
+ * 源程序整体可随机访问, 因此词法单元的文本位置就是其在源程序中的位置, 也可以被切分为多个区间分别扫描.
+ */
+class StringTokenScanner extends TokenScanner {
+    StringTokenScanner(String content, int from, int to, SymbolTable symbolTable) {
+        super(symbolTable, from);
+        this.content = content;
+        this.limit = to;
+    }
+
+    @Override
+    protected boolean ensure(int pos) {
+        return pos < limit;
+    }
+
+    @Override
+    protected char charAt(int pos) {
+        return content.charAt(pos);
+    }
+
+    @Override
+    protected String text(int begin, int end) {
+        return content.substring(begin, end);
+    }
+
+    @Override
+    public SourceText sourceText() {
+        return (start, length) -> content.substring(start, start + length);
+    }
+
+    @Override
+    protected int sourceLength() {
+        return content.length();
+    }
+
+    @Override
+    protected TokenScanner region(int from, int to, SymbolTable symbolTable) {
+        return new StringTokenScanner(content, from, to, symbolTable);
+    }
+
+    private final String content;
+    private final int limit;
+}
@@ -54,6 +54,28 @@ public class Token {
         return new Token(kind, text);
     }
 
+    /**
+     * @param kind         token 类型, 应当为 id
+     * @param text         标识符文本
+     * @param identifierId 标识符在标识符池中的编号
+     * @return 一个标识符 token
+     * @see cn.edu.hitsz.compiler.symtab.IdentifierPool
+     */
+    public static Token identifier(TokenKind kind, String text, int identifierId) {
+        return new Token(kind, text, identifierId);
+    }
+
+    /**
+     * @param kind   token 类型
+     * @param source 源程序
+     * @param start  文本在源程序中的起始位置
+     * @param length 文本长度
+     * @return 具有该 token 类型的一正常 token, 其文本在第一次调用 {@link #getText()} 时才从源程序中截取
+     */
+    public static Token lazy(TokenKind kind, SourceText source, int start, int length) {
+        return new Token(kind, source, start, length);
+    }
+
     /**
      * @return 该 token 的类型的文本表示
      */
@@ -68,23 +90,60 @@ public class Token {
         return kind;
     }
 
+    /**
+     * @return 标识符在标识符池中的编号; 若该 token 不是由词法分析器产生的标识符, 则为 -1
+     */
+    public int getIdentifierId() {
+        return identifierId;
+    }
+
     /**
      * @return 该 token 的文本, 有可能为空字符串 (但恒不为 null)
      */
     public String getText() {
-        return text;
+        // 先读入局部变量: 另一线程可能在判断之后才写入 text
+        var result = text;
+        if (result == null) {
+            // source 从不被置空, 截取结果总是相同的, 因此即便多个线程同时截取也无妨; String 本身可以被安全地发布
+            result = source.slice(start, length);
+            text = result;
+        }
+        return result;
     }
 
     @Override
     public String toString() {
-        return "(%s,%s)".formatted(kind, text);
+        return "(%s,%s)".formatted(kind, getText());
     }
 
     private Token(TokenKind kind, String text) {
+        this(kind, text, -1);
+    }
+
+    private Token(TokenKind kind, String text, int identifierId) {
         this.kind = kind;
         this.text = text;
+        this.identifierId = identifierId;
+        this.source = null;
+        this.start = 0;
+        this.length = 0;
+    }
+
+    private Token(TokenKind kind, SourceText source, int start, int length) {
+        this.kind = kind;
+        this.text = null;
+        this.identifierId = -1;
+        this.source = source;
+        this.start = start;
+        this.length = length;
     }
 
     private final TokenKind kind;
-    private final String text;
+    // 为 null 时表示文本尚未从 source 中截取
+    private String text;
+    private final int identifierId;
+    // 带文本构造的 token 中为 null
+    private final SourceText source;
+    private final int start;
+    private final int length;
 }
@@ -0,0 +1,191 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.IdentifierPool;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 紧凑的词法单元序列
+ * <br>
+ * 以 "数组的结构体" 的形式存放词法单元: 第 i 个词法单元由 {@code kindCode[i]} (即 {@link TokenKind#getCode()}),
+ * 以及其文本在 {@link SourceText} 中的起始位置 {@code start[i]} 与长度 {@code length[i]} 表示. 标点与关键字的长度为 0.
+ * 标识符的文本可以从标识符池中取得, 因此其 {@code start[i]} 存放的是标识符编号.
+ * 每个词法单元只占用三个 int, 也就不会为每个词法单元分配对象.
+ * <br>
+ * 对仍然需要 Token 对象的代码, {@link #get(int)} 提供了一个享元视图: 不带文本的词法单元在同一类型间共享同一个 Token 对象,
+ * 带文本的词法单元则只在被访问时才构造, 且其文本要等到调用 {@link Token#getText()} 时才被截取.
+ *
+ * @see TokenScanner#scanInto(TokenBuffer)
+ */
+public class TokenBuffer implements Iterable<Token> {
+    /**
+     * @param source         数字字面量的文本所在的源文本
+     * @param identifierPool 标识符所在的标识符池
+     */
+    public TokenBuffer(SourceText source, IdentifierPool identifierPool) {
+        this.source = source;
+        this.identifierPool = identifierPool;
+        this.idCode = TokenKind.fromString("id").getCode();
+    }
+
+    /**
+     * 追加一个词法单元
+     *
+     * @param code   类型码点
+     * @param start  文本起始位置
+     * @param length 文本长度, 不带文本时为 0
+     */
+    public void add(int code, int start, int length) {
+        if (size == kindCode.length) {
+            final var capacity = size * 2;
+            kindCode = Arrays.copyOf(kindCode, capacity);
+            this.start = Arrays.copyOf(this.start, capacity);
+            this.length = Arrays.copyOf(this.length, capacity);
+        }
+
+        kindCode[size] = code;
+        this.start[size] = start;
+        this.length[size] = length;
+        size++;
+    }
+
+    /**
+     * 追加另一缓冲区中 [from, to) 区间内的词法单元, 两者的数字字面量应来自同一源文本
+     *
+     * @param other         另一缓冲区
+     * @param from          起始下标 (含)
+     * @param to            结束下标 (不含)
+     * @param identifierIds 以另一缓冲区的标识符编号为下标, 其在本缓冲区的标识符池中的编号
+     */
+    public void addAll(TokenBuffer other, int from, int to, int[] identifierIds) {
+        final var count = to - from;
+        if (size + count > kindCode.length) {
+            final var capacity = Math.max(size * 2, size + count);
+            kindCode = Arrays.copyOf(kindCode, capacity);
+            this.start = Arrays.copyOf(this.start, capacity);
+            this.length = Arrays.copyOf(this.length, capacity);
+        }
+
+        System.arraycopy(other.kindCode, from, kindCode, size, count);
+        System.arraycopy(other.start, from, this.start, size, count);
+        System.arraycopy(other.length, from, this.length, size, count);
+        for (int i = size; i < size + count; i++) {
+            if (kindCode[i] == idCode) {
+                this.start[i] = identifierIds[this.start[i]];
+            }
+        }
+        size += count;
+    }
+
+    /**
+     * @return 词法单元个数
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getKindCode(int index) {
+        checkIndex(index);
+        return kindCode[index];
+    }
+
+    public int getStart(int index) {
+        checkIndex(index);
+        return start[index];
+    }
+
+    public int getLength(int index) {
+        checkIndex(index);
+        return length[index];
+    }
+
+    /**
+     * @return 数字字面量的文本所在的源文本
+     */
+    public SourceText getSource() {
+        return source;
+    }
+
+    /**
+     * @return 标识符所在的标识符池
+     */
+    public IdentifierPool getIdentifierPool() {
+        return identifierPool;
+    }
+
+    /**
+     * @param index 下标
+     * @return 第 index 个词法单元的文本, 有可能为空字符串
+     */
+    public String getText(int index) {
+        checkIndex(index);
+        if (kindCode[index] == idCode) {
+            return identifierPool.getName(start[index]);
+        }
+        return length[index] == 0 ? "" : source.slice(start[index], length[index]);
+    }
+
+    /**
+     * @param index 下标
+     * @return 第 index 个词法单元的享元视图
+     */
+    public Token get(int index) {
+        checkIndex(index);
+        final var kind = TokenKind.fromCode(kindCode[index]);
+        if (kindCode[index] == idCode) {
+            return Token.identifier(kind, identifierPool.getName(start[index]), start[index]);
+        }
+        if (length[index] != 0) {
+            return Token.lazy(kind, source, start[index], length[index]);
+        }
+
+        // 码点 -1 (EOF) 存放在下标 0 处
+        final var slot = kindCode[index] + 1;
+        if (slot >= simpleTokens.length) {
+            simpleTokens = Arrays.copyOf(simpleTokens, slot + 1);
+        }
+        if (simpleTokens[slot] == null) {
+            simpleTokens[slot] = Token.simple(kind);
+        }
+        return simpleTokens[slot];
+    }
+
+    @Override
+    public Iterator<Token> iterator() {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Token next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+
+            private int next = 0;
+        };
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Token index %d out of bounds for size %d".formatted(index, size));
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final SourceText source;
+    private final IdentifierPool identifierPool;
+    private final int idCode;
+    private int[] kindCode = new int[INITIAL_CAPACITY];
+    private int[] start = new int[INITIAL_CAPACITY];
+    private int[] length = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private Token[] simpleTokens = new Token[0];
+}
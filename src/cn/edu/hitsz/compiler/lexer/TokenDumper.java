@@ -0,0 +1,33 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * 把经过的词法单元逐行写入文件的观察者, 与 {@link TokenStream#tee(Consumer)} 配合使用
+ * <br>
+ * 输出格式与 {@link LexicalAnalyzer#dumpTokens(String)} 相同, 但它不需要先把所有词法单元存下来. 文件在遇到 EOF 时关闭.
+ */
+public class TokenDumper implements Consumer<Token> {
+    public TokenDumper(String path) {
+        this.writer = FileUtils.openWriter(path);
+    }
+
+    @Override
+    public void accept(Token token) {
+        try {
+            writer.write(token.toString());
+            writer.newLine();
+            if (token.getKind() == TokenKind.eof()) {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on dumping tokens", e);
+        }
+    }
+
+    private final BufferedWriter writer;
+}
@@ -27,17 +27,23 @@ import java.util.Map;
  */
 public class TokenKind extends Term {
     // 允许用作 TokenKind 的 id 的字符串集合
-    private static final Map<String, TokenKind> allowed = new HashMap<>();
+    // 读取码点文件时先在局部构造好, 再一次性发布; 发布后不再修改, 因此可以被多个线程同时读取
+    private static volatile Map<String, TokenKind> allowed = Map.of();
     private static final TokenKind eof = new TokenKind("$", -1);
+    // 以码点为下标的 TokenKind, 用于从紧凑的词法单元表示中还原类型
+    private static volatile TokenKind[] byCode = new TokenKind[0];
 
     /**
      * 从码点文件中读取允许的标识符集合
+     * <br>
+     * 只有第一次调用会读取码点文件, 之后的调用直接返回; 可以在多个线程中同时调用
      */
-    public static void loadTokenKinds() {
+    public static synchronized void loadTokenKinds() {
         if (!allowed.isEmpty()) {
-            throw new RuntimeException("Can not set allowed twice");
+            return;
         }
 
+        final var allowed = new HashMap<String, TokenKind>();
         final var lines = FileUtils.readLines(FilePathConfig.CODING_MAP_PATH);
         for (final var line : lines) {
             // 码点文件每行形如:
@@ -52,6 +58,17 @@ public class TokenKind extends Term {
 
         // EOF
         allowed.put("$", eof);
+
+        final var maxCode = allowed.values().stream().mapToInt(TokenKind::getCode).max().orElse(0);
+        final var byCode = new TokenKind[maxCode + 1];
+        for (final var kind : allowed.values()) {
+            if (kind != eof) {
+                byCode[kind.getCode()] = kind;
+            }
+        }
+
+        TokenKind.byCode = byCode;
+        TokenKind.allowed = Collections.unmodifiableMap(allowed);
     }
 
     /**
@@ -86,6 +103,22 @@ public class TokenKind extends Term {
         return allowed.get(id);
     }
 
+    /**
+     * @param code 码点
+     * @return 具有该码点的 TokenKind
+     * @throws RuntimeException 码点文件尚未被读取, 或不存在具有该码点的 TokenKind
+     */
+    public static TokenKind fromCode(int code) {
+        if (code == eof.code) {
+            return eof;
+        }
+        if (code < 0 || code >= byCode.length || byCode[code] == null) {
+            throw new RuntimeException("Illegal code: " + code);
+        }
+
+        return byCode[code];
+    }
+
     /**
      * @return 代表 EOF 的 TokenKind
      */
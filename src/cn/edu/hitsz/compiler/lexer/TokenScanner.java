@@ -0,0 +1,405 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.IdentifierPool;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.Reader;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 词法分析的扫描核心, 作为 {@link TokenStream} 每次按需从输入中识别出一个词法单元
+ * <br>
+ * 扫描器按最长匹配的规则驱动编译后的 DFA, 并把识别出的标识符登记到标识符池. 具体的输入如何存放由子类决定:
+ * 子类只需要提供按绝对位置读取字符与截取文本的能力, 并保证从当前词法单元的起始位置 (见 {@link #tokenStart})
+ * 开始的字符始终可读.
+ *
+ * @see ReaderTokenScanner 从 Reader 中以固定大小的缓冲区流式读取输入
+ * @see MappedTokenScanner 直接在源文件的内存映射上扫描
+ * @see StringTokenScanner 在内存中的字符串上扫描
+ */
+public abstract class TokenScanner implements TokenStream {
+    /**
+     * 默认的流式缓冲区大小 (字符数)
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * @param reader      输入
+     * @param symbolTable 符号表
+     * @return 以默认大小的缓冲区从 reader 中流式读取输入的扫描器
+     */
+    public static TokenScanner fromReader(Reader reader, SymbolTable symbolTable) {
+        return new ReaderTokenScanner(reader, DEFAULT_BUFFER_SIZE, symbolTable);
+    }
+
+    /**
+     * @param path        ASCII/UTF-8 编码的源文件路径
+     * @param symbolTable 符号表
+     * @return 直接在源文件的内存映射上扫描的扫描器
+     */
+    public static TokenScanner fromMappedFile(String path, SymbolTable symbolTable) {
+        final var buffer = MappedTokenScanner.map(path);
+        return new MappedTokenScanner(buffer, 0, buffer.limit(), symbolTable);
+    }
+
+    /**
+     * @param content     源程序
+     * @param symbolTable 符号表
+     * @return 在内存中的字符串上扫描的扫描器
+     */
+    public static TokenScanner fromString(String content, SymbolTable symbolTable) {
+        return new StringTokenScanner(content, 0, content.length(), symbolTable);
+    }
+
+    /**
+     * 识别下一个词法单元. 输入耗尽之后, 每次调用都会返回 EOF 词法单元.
+     *
+     * @return 下一个词法单元
+     * @throws RuntimeException 遇到了无法识别的字符
+     */
+    @Override
+    public Token next() {
+        final var token = peek();
+        lookahead = null;
+        return token;
+    }
+
+    @Override
+    public Token peek() {
+        if (lookahead == null) {
+            lookahead = scan();
+        }
+        return lookahead;
+    }
+
+    /**
+     * 识别下一个词法单元, 但不构造 Token 对象, 而只把其类型码与文本位置追加到 buffer 中.
+     * 识别出的标识符同样会被登记到标识符池. 不应与 {@link #next()}/{@link #peek()} 混用.
+     *
+     * @param buffer 词法单元缓冲区, 其文本应来自 {@link #sourceText()}, 标识符应来自符号表的标识符池
+     * @return 识别出的是否是 EOF 以外的词法单元
+     */
+    public boolean scanInto(TokenBuffer buffer) {
+        final var acceptedState = scanState();
+        if (acceptedState == END_OF_INPUT) {
+            buffer.add(TokenKind.eof().getCode(), 0, 0);
+            return false;
+        }
+
+        final var begin = tokenBegin;
+        final var end = position;
+        if (acceptedState == identifierState) {
+            final var kind = identifierKind(identifierText(begin, end));
+            if (kind == idKind) {
+                // 标识符的文本可以从标识符池中取得, 因此只记录其编号
+                buffer.add(kind.getCode(), identifierId, end - begin);
+            } else {
+                buffer.add(kind.getCode(), 0, 0);
+            }
+            return true;
+        }
+
+        final var kind = kindOfState[acceptedState];
+        if (kind == intConstKind) {
+            buffer.add(kind.getCode(), textPosition(begin, end), end - begin);
+        } else {
+            buffer.add(kind.getCode(), 0, 0);
+        }
+        return true;
+    }
+
+    private Token scan() {
+        final var acceptedState = scanState();
+        if (acceptedState == END_OF_INPUT) {
+            return Token.eof();
+        }
+        return makeToken(acceptedState, tokenBegin, position);
+    }
+
+    /**
+     * 按最长匹配识别一个词法单元, 识别结束后其位于 [tokenBegin, position) 处
+     *
+     * @return 识别出的接受状态, 若输入已经耗尽则为 END_OF_INPUT
+     */
+    private int scanState() {
+        // 跳过空白字符
+        while (true) {
+            tokenStart = position;
+            if (!ensure(position)) {
+                scanExtent = position + 1;
+                close();
+                return END_OF_INPUT;
+            }
+            if (!Character.isWhitespace(charAt(position))) {
+                break;
+            }
+            position++;
+        }
+
+        // 最长匹配: 一直转移到 DFA 卡死为止, 并记住最后一次经过的接受状态
+        final int begin = position;
+        int state = CompiledDFA.START;
+        int acceptedState = CompiledDFA.DEAD;
+        int acceptedEnd = begin;
+        while (ensure(position)) {
+            state = dfa.step(state, charAt(position));
+            if (state == CompiledDFA.DEAD) {
+                break;
+            }
+            position++;
+            if (dfa.isAccepting(state)) {
+                acceptedState = state;
+                acceptedEnd = position;
+            }
+        }
+        // 使 DFA 卡死的字符 (或输入的结束) 也被读过了
+        scanExtent = position + 1;
+
+        if (acceptedState == CompiledDFA.DEAD) {
+            throw new RuntimeException("Unexpected character: " + charAt(acceptedEnd));
+        }
+        position = acceptedEnd;
+        tokenBegin = begin;
+
+        return acceptedState;
+    }
+
+    /**
+     * @return 最近一次识别出的 (EOF 以外的) 词法单元的起始位置
+     */
+    int lastTokenBegin() {
+        return tokenBegin;
+    }
+
+    /**
+     * @return 最近一次识别出的 (EOF 以外的) 词法单元的结束位置 (不含)
+     */
+    int lastTokenEnd() {
+        return position;
+    }
+
+    /**
+     * 最近一次识别 (包括跳过其前的空白与最长匹配时多读的字符) 所读过的最远位置之后的位置.
+     * 该词法单元只取决于此位置之前的输入, 增量词法分析据此判断一处修改会影响哪些词法单元.
+     *
+     * @return 读过的最远位置 + 1, 判断输入是否已经结束也算作读过该位置
+     * @see IncrementalLexer
+     */
+    int lastScanExtent() {
+        return scanExtent;
+    }
+
+    /**
+     * 释放扫描器占用的输入资源. 输入耗尽时会被自动调用.
+     */
+    public void close() {
+    }
+
+    //==================== 以下由具体的输入实现 ==============================//
+
+    /**
+     * 保证位置 pos 处的字符可读
+     *
+     * @param pos 绝对位置
+     * @return 若输入在 pos 之前已经结束则返回 false
+     */
+    protected abstract boolean ensure(int pos);
+
+    /**
+     * @param pos 绝对位置, 调用前须已经通过 {@link #ensure(int)} 保证其可读
+     * @return 该位置的字符
+     */
+    protected abstract char charAt(int pos);
+
+    /**
+     * @param begin 起始绝对位置 (含)
+     * @param end   结束绝对位置 (不含)
+     * @return 该区间的文本
+     */
+    protected abstract String text(int begin, int end);
+
+    /**
+     * 当前正在识别的词法单元的起始位置, 在它之前的输入已经不再需要
+     */
+    protected int tokenStart = 0;
+
+    /**
+     * @return 可随机访问的输入的总长度; 若输入不可随机访问 (比如流式输入) 则为 -1
+     */
+    protected int sourceLength() {
+        return -1;
+    }
+
+    /**
+     * 在同一输入上构造只扫描 [from, to) 区间的扫描器, 其识别出的词法单元的位置与本扫描器一致. 仅可随机访问的输入支持此操作.
+     *
+     * @param from        起始绝对位置 (含)
+     * @param to          结束绝对位置 (不含)
+     * @param symbolTable 新扫描器维护的符号表
+     * @return 新扫描器
+     */
+    protected TokenScanner region(int from, int to, SymbolTable symbolTable) {
+        throw new UnsupportedOperationException("Source of this scanner is not random-access");
+    }
+
+    protected TokenScanner(SymbolTable symbolTable) {
+        this(symbolTable, 0);
+    }
+
+    /**
+     * @param symbolTable 符号表
+     * @param position    开始扫描的绝对位置
+     */
+    protected TokenScanner(SymbolTable symbolTable, int position) {
+        this.identifierPool = symbolTable.getIdentifierPool();
+        this.position = position;
+        this.tokenStart = position;
+
+        this.kindOfState = new TokenKind[dfa.getStateCount()];
+        for (final var entry : TOKEN_KIND_OF_STATE.entrySet()) {
+            kindOfState[dfa.getStateId(entry.getKey())] = TokenKind.fromString(entry.getValue());
+        }
+        this.idKind = TokenKind.fromString("id");
+        this.intConstKind = TokenKind.fromString("IntConst");
+    }
+
+    /**
+     * 截取标识符的文本, 子类可以覆盖此方法以复用同一标识符的字符串
+     *
+     * @param begin 起始绝对位置 (含)
+     * @param end   结束绝对位置 (不含)
+     * @return 标识符文本
+     */
+    protected String identifierText(int begin, int end) {
+        return text(begin, end);
+    }
+
+    /**
+     * 构造带文本的非标识符词法单元 (即数字字面量), 子类可以覆盖此方法以推迟截取文本
+     *
+     * @param kind  词法单元类型
+     * @param begin 起始绝对位置 (含)
+     * @param end   结束绝对位置 (不含)
+     * @return 词法单元
+     */
+    protected Token literalToken(TokenKind kind, int begin, int end) {
+        return Token.normal(kind, text(begin, end));
+    }
+
+    /**
+     * 获得 {@link #scanInto(TokenBuffer)} 写入的文本位置所指向的源文本
+     *
+     * @return 源文本
+     */
+    public abstract SourceText sourceText();
+
+    /**
+     * 为 {@link #scanInto(TokenBuffer)} 确定一个数字字面量的文本在 {@link #sourceText()} 中的位置.
+     * 源程序可随机访问时即为其在源程序中的位置; 否则子类需要把文本另存下来.
+     *
+     * @param begin 起始绝对位置 (含)
+     * @param end   结束绝对位置 (不含)
+     * @return 文本在 {@link #sourceText()} 中的起始位置
+     */
+    protected int textPosition(int begin, int end) {
+        return begin;
+    }
+
+    /**
+     * 区分关键字与标识符, 并把新出现的标识符加入标识符池. 若为标识符, 其编号存放在 identifierId 中.
+     *
+     * @param identifier 标识符文本
+     * @return 关键字对应的 TokenKind, 或 id
+     */
+    private TokenKind identifierKind(String identifier) {
+        // 码点文件中也有名为 id 的类型, 源程序中写作 id 的仍然是一个普通的标识符
+        if (TokenKind.isAllowed(identifier) && !identifier.equals(idKind.getIdentifier())) {
+            return TokenKind.fromString(identifier);
+        }
+
+        // 只登记名字; 符号表条目要等到声明时才在对应的作用域中创建
+        identifierId = identifierPool.intern(identifier);
+        return idKind;
+    }
+
+    private Token makeToken(int acceptedState, int begin, int end) {
+        if (acceptedState == identifierState) {
+            final var identifier = identifierText(begin, end);
+            final var kind = identifierKind(identifier);
+            return kind == idKind ? Token.identifier(kind, identifier, identifierId) : Token.simple(kind);
+        }
+
+        final var kind = kindOfState[acceptedState];
+        if (kind == intConstKind) {
+            return literalToken(kind, begin, end);
+        } else {
+            return Token.simple(kind);
+        }
+    }
+
+    private final IdentifierPool identifierPool;
+    // 最近一次识别出的标识符的编号
+    private int identifierId = IdentifierPool.NOT_FOUND;
+    // 每个接受状态对应的 TokenKind, 标识符状态需要额外区分关键字, 故置为 null
+    private final TokenKind[] kindOfState;
+    private final TokenKind idKind;
+    private final TokenKind intConstKind;
+    private int position;
+    private int tokenBegin = 0;
+    private int scanExtent = 0;
+    private Token lookahead = null;
+
+    // DFA 只与词法规则有关, 与具体输入无关, 因此只需构造并编译一次
+    private static final CompiledDFA dfa = buildDFA();
+    private static final int identifierState = dfa.getStateId("IDENTIFIER");
+    private static final int END_OF_INPUT = -2;
+
+    // 除标识符外, 各接受状态对应的 TokenKind 标识符
+    private static final Map<String, String> TOKEN_KIND_OF_STATE = Map.of(
+        "NUMBER", "IntConst",
+        "SEMICOLON", "Semicolon",
+        "PLUS", "+",
+        "MINUS", "-",
+        "STAR", "*",
+        "SLASH", "/",
+        "LPAREN", "(",
+        "RPAREN", ")",
+        "ASSIGN", "="
+    );
+
+    private static CompiledDFA buildDFA() {
+        final var dfa = new DFA("START", List.of("IDENTIFIER", "NUMBER", "PLUS", "MINUS", "STAR", "SLASH", "LPAREN", "RPAREN", "SEMICOLON", "ASSIGN"));
+
+        // 初始化DFA的状态转换
+        dfa.addTransition("START", ';', "SEMICOLON");
+        dfa.addTransition("START", '+', "PLUS");
+        dfa.addTransition("START", '-', "MINUS");
+        dfa.addTransition("START", '*', "STAR");
+        dfa.addTransition("START", '/', "SLASH");
+        dfa.addTransition("START", '(', "LPAREN");
+        dfa.addTransition("START", ')', "RPAREN");
+        dfa.addTransition("START", '=', "ASSIGN");
+
+        // 添加标识符和数字的处理
+        for (char c = 'a'; c <= 'z'; c++) {
+            dfa.addTransition("START", c, "IDENTIFIER");
+            dfa.addTransition("IDENTIFIER", c, "IDENTIFIER");
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            dfa.addTransition("START", c, "IDENTIFIER");
+            dfa.addTransition("IDENTIFIER", c, "IDENTIFIER");
+        }
+        dfa.addTransition("START", '_', "IDENTIFIER");
+        dfa.addTransition("IDENTIFIER", '_', "IDENTIFIER");
+
+        for (char c = '0'; c <= '9'; c++) {
+            dfa.addTransition("START", c, "NUMBER");
+            dfa.addTransition("NUMBER", c, "NUMBER");
+            // 标识符的非首字符可以是数字
+            dfa.addTransition("IDENTIFIER", c, "IDENTIFIER");
+        }
+
+        return dfa.compile();
+    }
+}
@@ -0,0 +1,90 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * 按需拉取的词法单元流
+ * <br>
+ * 与一次性产生全部词法单元的列表不同, 词法单元流只在语法分析器需要下一个词法单元时才去识别它, 从而使词法分析与语法分析流水线化,
+ * 完整的词法单元列表也就不必存在于内存中. 流的末尾是 EOF 词法单元, 读到 EOF 之后再读仍然得到 EOF.
+ *
+ * @see TokenScanner 由词法分析器按需识别词法单元的流
+ */
+public interface TokenStream {
+    /**
+     * 消耗并返回下一个词法单元
+     *
+     * @return 下一个词法单元
+     */
+    Token next();
+
+    /**
+     * 返回下一个词法单元, 但不消耗它
+     *
+     * @return 下一个词法单元
+     */
+    Token peek();
+
+    /**
+     * 在流上挂一个观察者, 每个词法单元在第一次被读到时都会交给它 (包括末尾的 EOF, 但只交一次)
+     *
+     * @param observer 观察者, 比如 {@link TokenDumper}
+     * @return 挂上观察者后的流
+     */
+    default TokenStream tee(Consumer<Token> observer) {
+        final var source = this;
+        return new TokenStream() {
+            @Override
+            public Token next() {
+                final var token = peek();
+                source.next();
+                peeked = false;
+                return token;
+            }
+
+            @Override
+            public Token peek() {
+                if (!peeked) {
+                    lookahead = source.peek();
+                    peeked = true;
+                    if (!finished) {
+                        observer.accept(lookahead);
+                        finished = lookahead.getKind() == TokenKind.eof();
+                    }
+                }
+                return lookahead;
+            }
+
+            private Token lookahead = null;
+            private boolean peeked = false;
+            private boolean finished = false;
+        };
+    }
+
+    /**
+     * @param tokens 已经识别好的词法单元, 应当以 EOF 结尾
+     * @return 依次产生这些词法单元的流, 其并不复制 tokens
+     */
+    static TokenStream of(Iterable<Token> tokens) {
+        final Iterator<Token> iterator = tokens.iterator();
+        return new TokenStream() {
+            @Override
+            public Token next() {
+                final var token = peek();
+                lookahead = null;
+                return token;
+            }
+
+            @Override
+            public Token peek() {
+                if (lookahead == null) {
+                    lookahead = iterator.hasNext() ? iterator.next() : Token.eof();
+                }
+                return lookahead;
+            }
+
+            private Token lookahead = null;
+        };
+    }
+}
@@ -0,0 +1,239 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.ParsingTable;
+import cn.edu.hitsz.compiler.parser.table.TableCache;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * 由 {@link cn.edu.hitsz.compiler.parser.table.ParserGenerator} 根据语法文件生成的专用 LR 语法分析器, 请勿手动修改
+ * <br>
+ * 用法与 {@link SyntaxAnalyzer} 相同, 但不需要加载分析表. 编译器的各个入口默认仍使用 {@link SyntaxAnalyzer}, 需要时自行替换.
+ */
+public final class GeneratedParser extends SyntaxAnalyzer {
+    /**
+     * 生成时语法文件与码点文件的摘要
+     */
+    public static final String GRAMMAR_DIGEST = "907a269acae4daa324eab79177f4029afa72b7a5b49c652fe63faad113e06c9d";
+
+    public GeneratedParser(SymbolTable symbolTable) {
+        super(symbolTable);
+        verify();
+    }
+
+    /**
+     * 检查语法文件与码点文件自生成以来有没有被改动. 摘要只在第一次检查通过前计算, 之后构造分析器时不再读取文件
+     *
+     * @throws RuntimeException 语法已经改动, 需要重新运行 ParserGenerator
+     */
+    public static void verify() {
+        if (verified) {
+            return;
+        }
+        if (!GRAMMAR_DIGEST.equals(TableCache.grammarDigest())) {
+            throw new RuntimeException("Grammar has changed since GeneratedParser was generated, please run ParserGenerator again");
+        }
+        verified = true;
+    }
+
+    @Override
+    public void run() {
+        final var tokens = getTokenStream();
+        int[] statusStack = new int[64];
+        int top = 0;
+        statusStack[top] = 0;
+
+        while (true) {
+            final var currentStatus = statusStack[top];
+            final var currentToken = tokens.peek();
+            final var code = currentToken.getKind().getCode() + 1;
+            final var column = code >= 0 && code < COLUMN_OF_CODE.length ? COLUMN_OF_CODE[code] : -1;
+            final var action = column < 0 ? ParsingTable.ERROR : ACTION[currentStatus * TERMINAL_COUNT + column];
+
+            switch (action & ParsingTable.KIND_MASK) {
+                case ParsingTable.SHIFT -> {
+                    callWhenInShift(TABLE.getStatus(currentStatus), currentToken);
+                    if (++top == statusStack.length) {
+                        statusStack = Arrays.copyOf(statusStack, statusStack.length * 2);
+                    }
+                    statusStack[top] = action >>> ParsingTable.KIND_BITS;
+                    tokens.next();
+                }
+
+                case ParsingTable.REDUCE -> {
+                    final var production = action >>> ParsingTable.KIND_BITS;
+                    final int exposed;
+                    final int goto_;
+                    switch (production) {
+                        case 2 -> { // S_list -> S Semicolon S_list
+                            top -= 3;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 6];
+                        }
+                        case 3 -> { // S_list -> S Semicolon
+                            top -= 2;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 6];
+                        }
+                        case 4 -> { // S -> D id
+                            top -= 2;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 3];
+                        }
+                        case 5 -> { // D -> int
+                            top -= 1;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 4];
+                        }
+                        case 6 -> { // S -> id = E
+                            top -= 3;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 3];
+                        }
+                        case 7 -> { // S -> return E
+                            top -= 2;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 3];
+                        }
+                        case 8 -> { // E -> E + A
+                            top -= 3;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 5];
+                        }
+                        case 9 -> { // E -> E - A
+                            top -= 3;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 5];
+                        }
+                        case 10 -> { // E -> A
+                            top -= 1;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 5];
+                        }
+                        case 11 -> { // A -> A * B
+                            top -= 3;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 1];
+                        }
+                        case 12 -> { // A -> B
+                            top -= 1;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 1];
+                        }
+                        case 13 -> { // B -> ( E )
+                            top -= 3;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 2];
+                        }
+                        case 14 -> { // B -> id
+                            top -= 1;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 2];
+                        }
+                        case 15 -> { // B -> IntConst
+                            top -= 1;
+                            exposed = statusStack[top];
+                            goto_ = GOTO[exposed * NON_TERMINAL_COUNT + 2];
+                        }
+                        default -> throw new RuntimeException("Unknown production: " + production);
+                    }
+                    if (goto_ == ParsingTable.NO_GOTO) {
+                        throw new RuntimeException("No goto from status %d on %s".formatted(
+                            exposed, TABLE.getProduction(production).head()));
+                    }
+                    if (++top == statusStack.length) {
+                        statusStack = Arrays.copyOf(statusStack, statusStack.length * 2);
+                    }
+                    statusStack[top] = goto_;
+                    callWhenInReduce(TABLE.getStatus(exposed), TABLE.getProduction(production));
+                }
+
+                case ParsingTable.ACCEPT -> {
+                    callWhenInAccept(TABLE.getStatus(currentStatus));
+                    return;
+                }
+
+                default -> throw new RuntimeException("Unexpected token %s at status %d".formatted(currentToken, currentStatus));
+            }
+        }
+    }
+
+    private static final int TERMINAL_COUNT = 14;
+    private static final int NON_TERMINAL_COUNT = 7;
+
+    // 以码点 + 1 为下标的终结符列号
+    private static final int[] COLUMN_OF_CODE = {0, -1, 8, 13, 12, 5, 10, 4, 6, 3, 9, 1, 2, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 11, 7};
+    private static final int[] TERMINAL_CODES = {-1, 10, 11, 8, 6, 4, 7, 52, 1, 9, 5, 51, 3, 2};
+    private static final String[] NON_TERMINAL_NAMES = {"P", "A", "B", "S", "D", "E", "S_list"};
+
+    private static final int[] ACTION = {
+        0, 0, 0, 0, 0, 0, 0, 0, 17, 0, 0, 21, 0, 25,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 29, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 33, 0, 0,
+        3, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 22, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 37, 0,
+        0, 53, 0, 0, 0, 0, 0, 57, 0, 0, 0, 61, 0, 0,
+        14, 0, 0, 0, 0, 0, 0, 0, 17, 0, 0, 21, 0, 25,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 18, 0, 0, 0,
+        0, 53, 0, 0, 0, 0, 0, 57, 0, 0, 0, 61, 0, 0,
+        0, 0, 42, 73, 42, 0, 42, 0, 0, 0, 42, 0, 0, 0,
+        0, 0, 50, 50, 50, 0, 50, 0, 0, 0, 50, 0, 0, 0,
+        0, 0, 0, 0, 77, 0, 81, 0, 0, 0, 30, 0, 0, 0,
+        0, 53, 0, 0, 0, 0, 0, 57, 0, 0, 0, 61, 0, 0,
+        0, 0, 62, 62, 62, 0, 62, 0, 0, 0, 62, 0, 0, 0,
+        0, 0, 58, 58, 58, 0, 58, 0, 0, 0, 58, 0, 0, 0,
+        10, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 77, 0, 81, 0, 0, 0, 26, 0, 0, 0,
+        0, 53, 0, 0, 0, 0, 0, 57, 0, 0, 0, 61, 0, 0,
+        0, 53, 0, 0, 0, 0, 0, 57, 0, 0, 0, 61, 0, 0,
+        0, 53, 0, 0, 0, 0, 0, 57, 0, 0, 0, 61, 0, 0,
+        0, 0, 101, 0, 77, 0, 81, 0, 0, 0, 0, 0, 0, 0,
+        0, 0, 46, 46, 46, 0, 46, 0, 0, 0, 46, 0, 0, 0,
+        0, 0, 34, 73, 34, 0, 34, 0, 0, 0, 34, 0, 0, 0,
+        0, 0, 38, 73, 38, 0, 38, 0, 0, 0, 38, 0, 0, 0,
+        0, 0, 54, 54, 54, 0, 54, 0, 0, 0, 54, 0, 0, 0,
+    };
+
+    private static final int[] GOTO = {
+        -1, -1, -1, 1, 2, -1, 3,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, 10, 11, -1, -1, 12, -1,
+        -1, -1, -1, 1, 2, -1, 16,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, 10, 11, -1, -1, 17, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, 10, 11, -1, -1, 21, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, 22, -1, -1, -1, -1,
+        -1, 23, 11, -1, -1, -1, -1,
+        -1, 24, 11, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+        -1, -1, -1, -1, -1, -1, -1,
+    };
+
+    // 语法文件的摘要是否已经检查通过, 并发的首次检查至多重复计算摘要, 不影响结果
+    private static volatile boolean verified = false;
+
+    // 由上面的数组还原出的分析表, 只用于向观察者传递 Status 与 Production 对象
+    private static final CompiledLRTable TABLE = CompiledLRTable.compile(LRTable.fromArrays(
+        TERMINAL_CODES, NON_TERMINAL_NAMES, IntStream.range(0, 26).toArray(), ACTION, GOTO
+    ));
+}
+
@@ -19,11 +19,18 @@ public class IRGenerator implements ActionObserver {
     private SymbolTable symbolTable;
     private final List<Instruction> intermediateCode = new ArrayList<>();
     private final Stack<IRValue> operandStack = new Stack<>();
+    // 已移入但尚未解析的标识符编号; 标识符在用到它的产生式规约时才经由符号表解析为当前作用域中的条目
+    private final Stack<Integer> identifierStack = new Stack<>();
+    // 临时变量在每次编译中各自从 0 开始编号
+    private int tempCount = 0;
 
     @Override
     public void whenShift(Status currentStatus, Token currentToken) {
         switch (currentToken.getKindId()) {
-            case "id" -> operandStack.push(IRVariable.named(currentToken.getText()));
+            case "id" -> {
+                identifierStack.push(identifierIdOf(currentToken));
+                operandStack.push(null);
+            }
             case "IntConst" -> operandStack.push(IRImmediate.of(Integer.parseInt(currentToken.getText())));
             case "int", "return", "=", ",", "Semicolon", "+", "-", "*", "/", "(", ")" -> operandStack.push(null);
             default -> throw new IllegalArgumentException("Invalid token type: " + currentToken.getKindId());
@@ -33,15 +40,20 @@ public class IRGenerator implements ActionObserver {
     @Override
     public void whenReduce(Status currentStatus, Production production) {
         switch (production.index()) {
-            case 1, 2, 3, 4, 5 -> { 
+            case 1, 2, 3, 5 -> { 
                 // P -> S_list; 
                 // S_list -> S Semicolon S_list; 
                 // S_list -> S Semicolon; 
-                // S -> D id; 
                 // D -> int;
                 popNElements(production.body().size());
                 operandStack.push(null);
             }
+            case 4 -> { // S -> D id;
+                // 声明由 SemanticAnalyzer 负责, 这里只丢弃该标识符
+                identifierStack.pop();
+                popNElements(production.body().size());
+                operandStack.push(null);
+            }
             case 6 -> { // S -> id = E;
                 processAssignment();
             }
@@ -66,7 +78,11 @@ public class IRGenerator implements ActionObserver {
             case 13 -> { // B -> ( E );
                 processParentheses();
             }
-            case 14, 15 -> { // B -> id; B -> IntConst;
+            case 14 -> { // B -> id;
+                operandStack.pop();
+                operandStack.push(variableOf(identifierStack.pop()));
+            }
+            case 15 -> { // B -> IntConst;
                 IRValue value = operandStack.pop();
                 operandStack.push(value);
             }
@@ -77,10 +93,11 @@ public class IRGenerator implements ActionObserver {
     private void processAssignment() {
         IRValue expression = operandStack.pop();
         operandStack.pop(); // Pop '=' token
-        IRValue target = operandStack.pop();
+        operandStack.pop(); // Pop target id
+        IRVariable target = variableOf(identifierStack.pop());
         operandStack.push(null);
         
-        intermediateCode.add(Instruction.createMov((IRVariable) target, expression));
+        intermediateCode.add(Instruction.createMov(target, expression));
     }
 
     private void processReturn() {
@@ -96,7 +113,7 @@ public class IRGenerator implements ActionObserver {
         operandStack.pop(); // Pop operator token
         IRValue leftOperand = operandStack.pop();
         
-        IRVariable tempResult = IRVariable.temp();
+        IRVariable tempResult = IRVariable.temp(tempCount++);
         
         Instruction instruction = switch (kind) {
             case ADD -> Instruction.createAdd(tempResult, leftOperand, rightOperand);
@@ -116,6 +133,24 @@ public class IRGenerator implements ActionObserver {
         operandStack.push(expression);
     }
 
+    /**
+     * @param token 标识符 token
+     * @return 标识符的编号, 对不是由词法分析器产生的 token 则现场从标识符池中取得
+     */
+    private int identifierIdOf(Token token) {
+        final var identifierId = token.getIdentifierId();
+        return identifierId >= 0 ? identifierId : symbolTable.getIdentifierPool().intern(token.getText());
+    }
+
+    /**
+     * @param identifierId 标识符在标识符池中的编号
+     * @return 该标识符在当前作用域中可见的条目对应的 IR 变量
+     */
+    private IRVariable variableOf(int identifierId) {
+        final var entry = symbolTable.get(identifierId);
+        return IRVariable.named(entry.getId(), entry.getText());
+    }
+
     private void popNElements(int n) {
         for (int i = 0; i < n; i++) {
             operandStack.pop();
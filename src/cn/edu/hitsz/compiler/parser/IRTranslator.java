@@ -0,0 +1,141 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.CompilationContext;
+import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.ir.IRImmediate;
+import cn.edu.hitsz.compiler.ir.IRValue;
+import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.symtab.SourceCodeType;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一遍完成语义检查与 IR 生成的翻译方案
+ * <br>
+ * 与分别作为观察者的 {@link SemanticAnalyzer} 和 {@link IRGenerator} 结果相同, 但二者的工作合并到了同一组
+ * {@link SemanticActions} 中, 共用驱动程序维护的属性栈. 各文法符号的属性为:
+ * <ul>
+ *     <li>id: 标识符在标识符池中的编号; IntConst: 对应的 {@link IRImmediate}; int: {@link SourceCodeType#Int};</li>
+ *     <li>D: 声明的类型; E, A, B: 存放其值的 {@link IRValue};</li>
+ *     <li>其余符号: null.</li>
+ * </ul>
+ * 标识符在用到它的产生式规约时才经由符号表解析为当前作用域中可见的条目, IR 变量以条目编号区分, 因此内层作用域中
+ * 遮蔽外层同名符号的变量不会与外层变量混淆. 声明 (S -> D id) 中的标识符在规约时才有条目, 无法在移入时解析.
+ */
+public class IRTranslator {
+    /**
+     * @param context 本次编译的上下文, 提供符号表与临时变量
+     */
+    public IRTranslator(CompilationContext context) {
+        this.context = context;
+        this.symbolTable = context.getSymbolTable();
+        this.actions = SemanticActions.create()
+            .onShift(this::attributeOf)
+            // S -> D id;
+            .onReduce(4, body -> {
+                final SourceCodeType type = body.get(0);
+                final int identifierId = body.get(1);
+                // 在当前作用域中声明该符号
+                symbolTable.declare(identifierId).setType(type);
+                return null;
+            })
+            // S -> id = E;
+            .onReduce(6, body -> {
+                intermediateCode.add(Instruction.createMov(variableOf(body.get(0)), body.get(2)));
+                return null;
+            })
+            // S -> return E;
+            .onReduce(7, body -> {
+                intermediateCode.add(Instruction.createRet(body.get(1)));
+                return null;
+            })
+            // E -> E + A;
+            .onReduce(8, body -> {
+                final var result = context.newTemp();
+                intermediateCode.add(Instruction.createAdd(result, body.get(0), body.get(2)));
+                return result;
+            })
+            // E -> E - A;
+            .onReduce(9, body -> {
+                final var result = context.newTemp();
+                intermediateCode.add(Instruction.createSub(result, body.get(0), body.get(2)));
+                return result;
+            })
+            // A -> A * B;
+            .onReduce(11, body -> {
+                final var result = context.newTemp();
+                intermediateCode.add(Instruction.createMul(result, body.get(0), body.get(2)));
+                return result;
+            })
+            // B -> ( E );
+            .onReduce(13, body -> body.get(1))
+            // B -> id;
+            .onReduce(14, body -> variableOf(body.get(0)));
+        // D -> int, E -> A, A -> B, B -> IntConst 均直接取产生式体中唯一符号的属性, 无需注册动作
+        // 语句与语句列表没有属性, 它们的产生式体中第一个符号的属性也都是 null
+    }
+
+    /**
+     * @return 供 {@link SyntaxAnalyzer#loadSemanticActions(SemanticActions)} 加载的语义动作
+     */
+    public SemanticActions getActions() {
+        return actions;
+    }
+
+    public List<Instruction> getIR() {
+        return Collections.unmodifiableList(intermediateCode);
+    }
+
+    public void dumpIR(String path) {
+        FileUtils.writeLines(path, intermediateCode.stream()
+            .map(Instruction::toString)
+            .toList());
+    }
+
+    private Object attributeOf(Token token) {
+        return switch (token.getKindId()) {
+            case "id" -> identifierIdOf(token);
+            case "IntConst" -> IRImmediate.of(Integer.parseInt(token.getText()));
+            case "int" -> SourceCodeType.Int;
+            // 为文法中的语句块预留: 移入左右花括号时进入/退出作用域
+            case "{" -> {
+                symbolTable.enterScope();
+                yield null;
+            }
+            case "}" -> {
+                symbolTable.exitScope();
+                yield null;
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * @param token 标识符 token
+     * @return 标识符的编号, 对不是由词法分析器产生的 token 则现场从标识符池中取得
+     */
+    private int identifierIdOf(Token token) {
+        final var identifierId = token.getIdentifierId();
+        return identifierId >= 0 ? identifierId : symbolTable.getIdentifierPool().intern(token.getText());
+    }
+
+    /**
+     * @param identifierId 标识符在标识符池中的编号
+     * @return 该标识符在当前作用域中可见的条目对应的 IR 变量
+     * @throws RuntimeException 该标识符未声明
+     */
+    private IRVariable variableOf(int identifierId) {
+        final var entry = symbolTable.get(identifierId);
+        return IRVariable.named(entry.getId(), entry.getText());
+    }
+
+    private final CompilationContext context;
+    private final SymbolTable symbolTable;
+    private final SemanticActions actions;
+    private final List<Instruction> intermediateCode = new ArrayList<>();
+}
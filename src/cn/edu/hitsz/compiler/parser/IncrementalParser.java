@@ -0,0 +1,469 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.IncrementalLexer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.ParsingTable;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 增量的词法与语法分析, 供编辑器在每次修改后重新编译同一个程序时使用
+ * <br>
+ * 词法部分见 {@link IncrementalLexer}. 语法部分则利用文法 {@code S_list -> S Semicolon S_list} 的结构, 在每条语句结束处
+ * (即移入分号之后) 记下一个快照: 下一个词法单元的下标, 当时的状态栈, 以及当时动作日志的长度. 动作日志按顺序记录分析中的每个
+ * 移入/规约/接受动作与当时的状态, 它与对源程序完整地分析一遍时通知观察者的内容完全相同. 修改源程序后:
+ * <ul>
+ *     <li>快照处的状态栈只取决于它之前的词法单元, 因此从位于第一个变化的词法单元之前 (含) 的最后一个快照恢复状态栈继续分析;</li>
+ *     <li>分析到修改处之后的某条语句结束时, 若状态栈与旧快照中的完全相同, 之后的分析过程也必然与上一次相同,
+ *     于是直接接上旧的快照与动作日志, 不必再分析下去.</li>
+ * </ul>
+ * 各快照的状态栈是共享栈底的不可变链表, 每个快照只需一个引用, 比较两个栈时遇到同一个结点即可停止.
+ * <br>
+ * 编辑过程中源程序常常暂时有语法错误. 此时分析在出错处停止, 但修改处之后的旧快照仍被保留, 待错误修正后照常接上.
+ * <br>
+ * 分析结果通过 {@link #replay(SyntaxAnalyzer, List)} 交给 {@link SyntaxAnalyzer} 的观察者与语义动作, 其效果与
+ * {@link SyntaxAnalyzer#run()} 完整地分析一遍相同. 语义动作 (符号表, 临时变量的编号) 都属于各次编译自己的上下文,
+ * 因此它们总是按日志重放一遍, 省去的是词法分析与查表驱动分析的开销.
+ */
+public final class IncrementalParser {
+    /**
+     * @param table 分析表
+     */
+    public IncrementalParser(ParsingTable table) {
+        this.table = table;
+        this.semicolonCode = TokenKind.fromString("Semicolon").getCode();
+        reset();
+    }
+
+    /**
+     * 完整地分析源程序, 丢弃之前的所有结果
+     *
+     * @param source 源程序
+     * @throws RuntimeException 词法或语法错误, 与完整分析时抛出的相同
+     */
+    public void load(String source) {
+        reset();
+        try {
+            lexer.load(source);
+        } catch (RuntimeException e) {
+            tailError = e.getMessage();
+            throw e;
+        }
+        reparse(0, 0, 0);
+        checkError();
+    }
+
+    /**
+     * 把源程序中 [offset, offset + removedLength) 的文本替换为 text, 并增量地重新分析
+     *
+     * @param offset        修改的起始位置
+     * @param removedLength 删去的字符数
+     * @param text          插入的文本
+     * @throws IndexOutOfBoundsException 修改的范围超出了源程序, 此时什么也没有改变
+     * @throws RuntimeException          修改后的源程序有词法或语法错误, 与完整分析时抛出的相同; 修改仍然生效, 可以继续修改
+     */
+    public void edit(int offset, int removedLength, String text) {
+        final IncrementalLexer.Damage damage;
+        try {
+            damage = lexer.edit(offset, removedLength, text);
+        } catch (RuntimeException e) {
+            if (!lexer.isValid()) {
+                reset();
+                tailError = e.getMessage();
+            }
+            throw e;
+        }
+
+        // 只改动了空白时词法单元序列没有变化, 分析结果也就不变
+        if (damage.changed()) {
+            reparse(damage.from(), damage.oldTo(), damage.newTo());
+        }
+        checkError();
+    }
+
+    /**
+     * @return 当前的源程序
+     */
+    public String getSource() {
+        return lexer.getSource();
+    }
+
+    /**
+     * @return 当前的源程序能否被成功分析
+     */
+    public boolean isAccepted() {
+        return error() == null;
+    }
+
+    /**
+     * @return 当前的源程序能否通过词法分析; 此时即便有语法错误, 也可以取出词法单元并重放出错之前的动作
+     */
+    public boolean isLexed() {
+        return lexer.isValid();
+    }
+
+    /**
+     * 取出所有词法单元, 并像词法分析器那样把标识符加入 symbolTable 的标识符池
+     *
+     * @param symbolTable 本次编译的符号表
+     * @return 所有词法单元, 以 EOF 结尾
+     * @see IncrementalLexer#getTokens(SymbolTable)
+     */
+    public List<Token> getTokens(SymbolTable symbolTable) {
+        return lexer.getTokens(symbolTable);
+    }
+
+    /**
+     * 按动作日志通知 analyzer 的语义动作与各观察者, 效果与用 analyzer 完整地分析一遍相同
+     *
+     * @param analyzer 已加载好观察者与语义动作的驱动程序, 其分析表与词法单元不会被使用
+     * @param tokens   由 {@link #getTokens(SymbolTable)} 取得的词法单元
+     * @throws RuntimeException 源程序有词法或语法错误, 此时出错之前的动作已经通知过了
+     */
+    public void replay(SyntaxAnalyzer analyzer, List<Token> tokens) {
+        if (tokens.size() != lexer.size()) {
+            throw new IllegalArgumentException("Expect %d tokens, got %d".formatted(lexer.size(), tokens.size()));
+        }
+
+        final var end = brokenAt < boundaryCount ? prefixLogEnd : logSize;
+        var cursor = 0;
+        for (int i = 0; i < end; i++) {
+            final var action = logAction[i];
+            final var status = table.getStatus(logState[i]);
+            switch (ParsingTable.kindOf(action)) {
+                case ParsingTable.SHIFT -> analyzer.callWhenInShift(status, tokens.get(cursor++));
+                case ParsingTable.REDUCE -> analyzer.callWhenInReduce(status, table.getProduction(ParsingTable.targetOf(action)));
+                case ParsingTable.ACCEPT -> analyzer.callWhenInAccept(status);
+                default -> throw new RuntimeException("Unexpected action %d in log".formatted(action));
+            }
+        }
+        checkError();
+    }
+
+    /**
+     * 状态栈的一个结点, 结点创建后不再改变, 因此可以被多个快照共享
+     */
+    private static final class Frame {
+        Frame(int state, Frame parent) {
+            this.state = state;
+            this.parent = parent;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        private final int state;
+        private final Frame parent;
+        private final int depth;
+    }
+
+    /**
+     * @return 两个栈中的状态是否完全相同
+     */
+    private static boolean sameStack(Frame lhs, Frame rhs) {
+        while (lhs != rhs) {
+            if (lhs.depth != rhs.depth || lhs.state != rhs.state) {
+                return false;
+            }
+            lhs = lhs.parent;
+            rhs = rhs.parent;
+        }
+        return true;
+    }
+
+    /**
+     * 清空所有快照, 只留下分析开始时的那一个
+     */
+    private void reset() {
+        Arrays.fill(boundaryFrame, 0, boundaryCount, null);
+        boundaryToken[0] = 0;
+        boundaryLog[0] = 0;
+        boundaryFrame[0] = new Frame(table.getInit(), null);
+        boundaryCount = 1;
+        brokenAt = 1;
+        logSize = 0;
+        prefixLogEnd = 0;
+        prefixError = null;
+        tailError = null;
+    }
+
+    /**
+     * 旧的词法单元 [from, oldTo) 被替换为 [from, newTo) 之后, 从合适的快照恢复分析
+     */
+    private void reparse(int from, int oldTo, int newTo) {
+        final var tokenShift = newTo - oldTo;
+        // 恢复分析的快照: 连续分析部分中位于第一个变化的词法单元之前 (含) 的最后一个快照
+        final var resume = upperBound(0, brokenAt, from) - 1;
+        // 可能被接上的旧快照: 位于被替换的词法单元之后的那些
+        var candidate = lowerBound(resume + 1, boundaryCount, oldTo);
+
+        segmentLogSize = 0;
+        segmentBoundaryCount = 0;
+        var top = boundaryFrame[resume];
+        var cursor = boundaryToken[resume];
+        String error = null;
+        var splice = -1;
+
+        parse:
+        while (true) {
+            final var state = top.state;
+            final var code = lexer.getKindCode(cursor);
+            final var action = table.getAction(state, table.getTerminalColumn(TokenKind.fromCode(code)));
+
+            switch (ParsingTable.kindOf(action)) {
+                case ParsingTable.SHIFT -> {
+                    record(action, state);
+                    top = new Frame(ParsingTable.targetOf(action), top);
+                    cursor++;
+                    if (code != semicolonCode) {
+                        continue;
+                    }
+
+                    // 一条语句结束, 若其后的词法单元与状态栈都与某个旧快照相同, 就接上旧快照
+                    if (cursor >= newTo) {
+                        final var oldToken = cursor - tokenShift;
+                        while (candidate < boundaryCount && boundaryToken[candidate] < oldToken) {
+                            candidate++;
+                        }
+                        if (candidate < boundaryCount && boundaryToken[candidate] == oldToken
+                            && sameStack(top, boundaryFrame[candidate])) {
+                            splice = candidate;
+                            break parse;
+                        }
+                    }
+                    addSegmentBoundary(cursor, top);
+                }
+
+                case ParsingTable.REDUCE -> {
+                    final var production = ParsingTable.targetOf(action);
+                    for (int i = table.getBodyLength(production); i > 0; i--) {
+                        top = top.parent;
+                    }
+                    final var exposedState = top.state;
+                    final var goto_ = table.getGoto(exposedState, table.getHeadColumn(production));
+                    if (goto_ == ParsingTable.NO_GOTO) {
+                        error = "No goto from status %d on %s".formatted(exposedState, table.getProduction(production).head());
+                        break parse;
+                    }
+                    record(action, exposedState);
+                    top = new Frame(goto_, top);
+                }
+
+                case ParsingTable.ACCEPT -> {
+                    record(action, state);
+                    break parse;
+                }
+
+                default -> {
+                    error = "Unexpected token %s at status %d".formatted(lexer.get(cursor), state);
+                    break parse;
+                }
+            }
+        }
+
+        final var wasBroken = brokenAt < boundaryCount;
+        if (splice >= 0) {
+            // 接上旧快照 splice 及其后的全部内容, 原先的出错位置 (若在其后) 也随之保留
+            final var logShift = commit(resume, splice, boundaryCount, boundaryLog[splice], logSize, tokenShift);
+            if (wasBroken && splice < brokenAt) {
+                brokenAt += (resume + 1 + segmentBoundaryCount) - splice;
+                prefixLogEnd += logShift;
+            } else {
+                brokenAt = boundaryCount;
+                prefixError = null;
+            }
+            return;
+        }
+
+        if (error == null) {
+            commit(resume, 0, 0, 0, 0, tokenShift);
+            brokenAt = boundaryCount;
+            prefixError = null;
+            tailError = null;
+            return;
+        }
+
+        // 出错了: 保留出错处之后, 来自同一次分析的一段旧快照, 待错误修正后还能接上
+        final var keepFrom = lowerBound(resume + 1, boundaryCount, Math.max(oldTo, cursor + 1 - tokenShift));
+        final int keepTo;
+        final int keepLogTo;
+        final String keptError;
+        if (keepFrom < brokenAt) {
+            keepTo = brokenAt;
+            keepLogTo = wasBroken ? prefixLogEnd : logSize;
+            keptError = wasBroken ? prefixError : tailError;
+        } else {
+            keepTo = boundaryCount;
+            keepLogTo = logSize;
+            keptError = tailError;
+        }
+
+        if (keepFrom < keepTo) {
+            commit(resume, keepFrom, keepTo, boundaryLog[keepFrom], keepLogTo, tokenShift);
+            brokenAt = resume + 1 + segmentBoundaryCount;
+            prefixLogEnd = boundaryLog[resume] + segmentLogSize;
+            prefixError = error;
+            tailError = keptError;
+        } else {
+            commit(resume, 0, 0, 0, 0, tokenShift);
+            brokenAt = boundaryCount;
+            prefixError = null;
+            tailError = error;
+        }
+    }
+
+    /**
+     * 以快照 resume 之前的内容, 新分析出的片段, 以及旧快照 [keepFrom, keepTo) 与旧日志 [logFrom, logTo) 拼出新的快照与日志
+     *
+     * @return 保留下来的旧日志的平移量
+     */
+    private int commit(int resume, int keepFrom, int keepTo, int logFrom, int logTo, int tokenShift) {
+        final var logBase = boundaryLog[resume];
+        final var keptBase = resume + 1 + segmentBoundaryCount;
+        final var keptCount = keepTo - keepFrom;
+        final var newBoundaryCount = keptBase + keptCount;
+        final var logShift = logBase + segmentLogSize - logFrom;
+        final var newLogSize = logBase + segmentLogSize + (logTo - logFrom);
+
+        ensureBoundaryCapacity(newBoundaryCount);
+        ensureLogCapacity(newLogSize);
+
+        // 先把保留的旧内容挪到位, 再放入新片段
+        System.arraycopy(boundaryToken, keepFrom, boundaryToken, keptBase, keptCount);
+        System.arraycopy(boundaryLog, keepFrom, boundaryLog, keptBase, keptCount);
+        System.arraycopy(boundaryFrame, keepFrom, boundaryFrame, keptBase, keptCount);
+        for (int i = keptBase; i < newBoundaryCount; i++) {
+            boundaryToken[i] += tokenShift;
+            boundaryLog[i] += logShift;
+        }
+        System.arraycopy(logAction, logFrom, logAction, logBase + segmentLogSize, logTo - logFrom);
+        System.arraycopy(logState, logFrom, logState, logBase + segmentLogSize, logTo - logFrom);
+
+        for (int i = 0; i < segmentBoundaryCount; i++) {
+            boundaryToken[resume + 1 + i] = segmentBoundaryToken[i];
+            boundaryLog[resume + 1 + i] = logBase + segmentBoundaryLog[i];
+            boundaryFrame[resume + 1 + i] = segmentBoundaryFrame[i];
+        }
+        System.arraycopy(segmentLogAction, 0, logAction, logBase, segmentLogSize);
+        System.arraycopy(segmentLogState, 0, logState, logBase, segmentLogSize);
+
+        if (newBoundaryCount < boundaryCount) {
+            Arrays.fill(boundaryFrame, newBoundaryCount, boundaryCount, null);
+        }
+        Arrays.fill(segmentBoundaryFrame, 0, segmentBoundaryCount, null);
+        boundaryCount = newBoundaryCount;
+        logSize = newLogSize;
+        return logShift;
+    }
+
+    private void record(int action, int state) {
+        if (segmentLogSize == segmentLogAction.length) {
+            segmentLogAction = Arrays.copyOf(segmentLogAction, segmentLogSize * 2);
+            segmentLogState = Arrays.copyOf(segmentLogState, segmentLogSize * 2);
+        }
+        segmentLogAction[segmentLogSize] = action;
+        segmentLogState[segmentLogSize] = state;
+        segmentLogSize++;
+    }
+
+    private void addSegmentBoundary(int token, Frame frame) {
+        if (segmentBoundaryCount == segmentBoundaryToken.length) {
+            final var capacity = segmentBoundaryCount * 2;
+            segmentBoundaryToken = Arrays.copyOf(segmentBoundaryToken, capacity);
+            segmentBoundaryLog = Arrays.copyOf(segmentBoundaryLog, capacity);
+            segmentBoundaryFrame = Arrays.copyOf(segmentBoundaryFrame, capacity);
+        }
+        segmentBoundaryToken[segmentBoundaryCount] = token;
+        segmentBoundaryLog[segmentBoundaryCount] = segmentLogSize;
+        segmentBoundaryFrame[segmentBoundaryCount] = frame;
+        segmentBoundaryCount++;
+    }
+
+    private void ensureBoundaryCapacity(int capacity) {
+        if (capacity > boundaryToken.length) {
+            final var newCapacity = Math.max(boundaryToken.length * 2, capacity);
+            boundaryToken = Arrays.copyOf(boundaryToken, newCapacity);
+            boundaryLog = Arrays.copyOf(boundaryLog, newCapacity);
+            boundaryFrame = Arrays.copyOf(boundaryFrame, newCapacity);
+        }
+    }
+
+    private void ensureLogCapacity(int capacity) {
+        if (capacity > logAction.length) {
+            final var newCapacity = Math.max(logAction.length * 2, capacity);
+            logAction = Arrays.copyOf(logAction, newCapacity);
+            logState = Arrays.copyOf(logState, newCapacity);
+        }
+    }
+
+    /**
+     * @return [from, to) 中第一个词法单元下标不小于 token 的快照
+     */
+    private int lowerBound(int from, int to, int token) {
+        while (from < to) {
+            final var mid = (from + to) >>> 1;
+            if (boundaryToken[mid] < token) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * @return [from, to) 中第一个词法单元下标大于 token 的快照
+     */
+    private int upperBound(int from, int to, int token) {
+        return lowerBound(from, to, token + 1);
+    }
+
+    /**
+     * @return 对当前源程序完整分析时会遇到的错误, 没有错误时为 null
+     */
+    private String error() {
+        return brokenAt < boundaryCount ? prefixError : tailError;
+    }
+
+    private void checkError() {
+        final var error = error();
+        if (error != null) {
+            throw new RuntimeException(error);
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ParsingTable table;
+    private final int semicolonCode;
+    private final IncrementalLexer lexer = new IncrementalLexer();
+
+    // 快照: 下一个词法单元的下标, 动作日志的长度与状态栈. 按词法单元下标递增排列.
+    // [0, brokenAt) 来自从头开始的连续分析; 若该分析出错, [brokenAt, boundaryCount) 是保留下来的出错处之后的旧快照
+    private int[] boundaryToken = new int[INITIAL_CAPACITY];
+    private int[] boundaryLog = new int[INITIAL_CAPACITY];
+    private Frame[] boundaryFrame = new Frame[INITIAL_CAPACITY];
+    private int boundaryCount = 0;
+    private int brokenAt = 0;
+
+    // 动作日志: 每项为 ACTION 表中的项与执行它时的状态 (规约时为弹出产生式体后露出的状态)
+    // 连续分析的日志一直记到接受或出错为止; 若其出错, 其后 [prefixLogEnd, logSize) 是保留下来的旧快照的日志
+    private int[] logAction = new int[INITIAL_CAPACITY];
+    private int[] logState = new int[INITIAL_CAPACITY];
+    private int logSize = 0;
+    private int prefixLogEnd = 0;
+    // 连续分析出错时的错误, 只在有保留下来的旧快照时使用
+    private String prefixError = null;
+    // 最后一段分析 (连续分析本身, 或保留下来的旧快照所属的那次分析) 的错误, 成功接受时为 null
+    private String tailError = null;
+
+    // 本次重新分析出的片段, 快照中的日志长度相对于片段的开头
+    private int[] segmentLogAction = new int[INITIAL_CAPACITY];
+    private int[] segmentLogState = new int[INITIAL_CAPACITY];
+    private int segmentLogSize = 0;
+    private int[] segmentBoundaryToken = new int[INITIAL_CAPACITY];
+    private int[] segmentBoundaryLog = new int[INITIAL_CAPACITY];
+    private Frame[] segmentBoundaryFrame = new Frame[INITIAL_CAPACITY];
+    private int segmentBoundaryCount = 0;
+}
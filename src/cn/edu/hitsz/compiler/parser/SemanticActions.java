@@ -0,0 +1,168 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.Production;
+
+import java.util.Arrays;
+
+/**
+ * 语法制导翻译的语义动作与属性栈
+ * <br>
+ * 观察者 ({@link ActionObserver}) 看不到驱动程序的状态栈, 所以每个需要属性的观察者都得自己维护一个与状态栈同步的栈,
+ * 并为不关心的符号压入占位的 null. 该类则像 yacc 那样, 由驱动程序维护唯一的一个属性栈, 其中每个文法符号对应一个属性值:
+ * <ul>
+ *     <li>移入终结符时, 以 {@link #onShift(ShiftHandler)} 注册的动作计算它的属性, 默认即为词法单元本身;</li>
+ *     <li>规约时, 以产生式编号找到由 {@link #onReduce(int, ReduceHandler)} 注册的动作, 用产生式体中各符号的属性算出产生式头的属性.
+ *     没有注册动作的产生式与 yacc 一样取产生式体中第一个符号的属性, 体为空时为 null.</li>
+ * </ul>
+ * 属性的类型由各文法符号决定 (比如 E 的属性是 IRValue, D 的属性是 SourceCodeType), 动作中按符号取出即可.
+ * <br>
+ * 通过 {@link SyntaxAnalyzer#loadSemanticActions(SemanticActions)} 加载后, 驱动程序在每次移入与规约时直接调用对应的动作,
+ * 而不必经过观察者列表; 多个翻译步骤 (如语义检查与 IR 生成) 也可以合并在同一组动作中一遍完成.
+ *
+ * @see IRTranslator
+ */
+public final class SemanticActions {
+    /**
+     * 计算终结符的属性
+     */
+    @FunctionalInterface
+    public interface ShiftHandler {
+        /**
+         * @param token 被移入的词法单元
+         * @return 其属性
+         */
+        Object attributeOf(Token token);
+    }
+
+    /**
+     * 规约时计算产生式头的属性
+     */
+    @FunctionalInterface
+    public interface ReduceHandler {
+        /**
+         * @param body 产生式体中各符号的属性
+         * @return 产生式头的属性
+         */
+        Object reduce(Attributes body);
+    }
+
+    /**
+     * 规约时产生式体中各符号的属性, 是属性栈顶部的一个视图, 只在动作执行期间有效
+     */
+    public static final class Attributes {
+        /**
+         * @param index 符号在产生式体中的下标, 从 0 开始
+         * @param <T>   该符号的属性的类型
+         * @return 该符号的属性
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T get(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index %d out of body of length %d".formatted(index, length));
+            }
+            return (T) values[base + index];
+        }
+
+        /**
+         * @return 产生式体的长度
+         */
+        public int size() {
+            return length;
+        }
+
+        private Object[] values;
+        private int base;
+        private int length;
+    }
+
+    public static SemanticActions create() {
+        return new SemanticActions();
+    }
+
+    /**
+     * 注册移入时的动作
+     *
+     * @param handler 计算终结符属性的动作
+     * @return this
+     */
+    public SemanticActions onShift(ShiftHandler handler) {
+        this.shiftHandler = handler;
+        return this;
+    }
+
+    /**
+     * 注册规约某条产生式时的动作
+     *
+     * @param productionIndex 产生式的编号, 即其在语法文件中的行号
+     * @param handler         计算产生式头属性的动作
+     * @return this
+     */
+    public SemanticActions onReduce(int productionIndex, ReduceHandler handler) {
+        if (productionIndex >= reduceHandlers.length) {
+            reduceHandlers = Arrays.copyOf(reduceHandlers, Math.max(reduceHandlers.length * 2, productionIndex + 1));
+        }
+        reduceHandlers[productionIndex] = handler;
+        return this;
+    }
+
+    /**
+     * 清空属性栈, 以便用同一组动作分析下一段输入
+     */
+    public void reset() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return 最近一次规约得到的属性, 分析结束后即为开始符号的属性
+     */
+    public Object getResult() {
+        return result;
+    }
+
+    //==================== 以下由驱动程序调用 ==============================//
+
+    void shift(Token token) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[size++] = shiftHandler.attributeOf(token);
+    }
+
+    void reduce(Production production) {
+        final var length = production.body().size();
+        final var base = size - length;
+        final var index = production.index();
+        final var handler = index < reduceHandlers.length ? reduceHandlers[index] : null;
+
+        if (handler != null) {
+            body.values = values;
+            body.base = base;
+            body.length = length;
+            result = handler.reduce(body);
+        } else {
+            result = length == 0 ? null : values[base];
+        }
+
+        // 弹出产生式体, 压入产生式头; 体为空时栈会增长
+        Arrays.fill(values, base, size, null);
+        size = base;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[size++] = result;
+    }
+
+    private SemanticActions() {
+    }
+
+    private ShiftHandler shiftHandler = token -> token;
+    // 以产生式编号为下标
+    private ReduceHandler[] reduceHandlers = new ReduceHandler[16];
+    private Object[] values = new Object[64];
+    private int size = 0;
+    private Object result = null;
+    // 复用同一个视图, 规约时不必分配对象
+    private final Attributes body = new Attributes();
+}
@@ -35,7 +35,11 @@ public class SemanticAnalyzer implements ActionObserver {
             SourceCodeType declaredType = semanticTypeStack.pop();
             
             // Update symbol table with type information
-            SymbolTableEntry entry = symbolTable.get(identifierToken.getText());
+            // 在当前作用域中声明该符号
+            final var identifierId = identifierToken.getIdentifierId() >= 0
+                ? identifierToken.getIdentifierId()
+                : symbolTable.getIdentifierPool().intern(identifierToken.getText());
+            SymbolTableEntry entry = symbolTable.declare(identifierId);
             entry.setType(declaredType);
             
             // Push placeholder values for the reduced production
@@ -63,6 +67,15 @@ public class SemanticAnalyzer implements ActionObserver {
 
     @Override
     public void whenShift(Status currentStatus, Token currentToken) {
+        // 为文法中的语句块预留: 移入左右花括号时进入/退出作用域.
+        // 移入右花括号时块内的声明都已经被规约完毕, 因此在此时退出作用域是安全的
+        switch (currentToken.getKindId()) {
+            case "{" -> symbolTable.enterScope();
+            case "}" -> symbolTable.exitScope();
+            default -> {
+            }
+        }
+
         semanticTokenStack.push(currentToken);
         
         // Only set type for 'int' tokens, null for all others
@@ -2,15 +2,17 @@ package cn.edu.hitsz.compiler.parser;
 
 import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.lexer.Token;
-import cn.edu.hitsz.compiler.parser.table.Action;
+import cn.edu.hitsz.compiler.lexer.TokenStream;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
 import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.ParsingTable;
 import cn.edu.hitsz.compiler.parser.table.Production;
 import cn.edu.hitsz.compiler.parser.table.Status;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Stack;
 
 //TODO: 实验二: 实现 LR 语法分析驱动程序
 
@@ -25,9 +27,9 @@ import java.util.Stack;
 public class SyntaxAnalyzer {
     private final SymbolTable symbolTable;
     private final List<ActionObserver> observers = new ArrayList<>();
-    private List<Token> tokenList = new ArrayList<>();
-    private int currentTokenIndex = 0;
-    private LRTable lrTable;
+    private TokenStream tokens;
+    private ParsingTable lrTable;
+    private SemanticActions semanticActions = null;
 
     public SyntaxAnalyzer(SymbolTable symbolTable) {
         this.symbolTable = symbolTable;
@@ -50,6 +52,9 @@ public class SyntaxAnalyzer {
      * @param currentToken  当前词法单元
      */
     public void callWhenInShift(Status currentStatus, Token currentToken) {
+        if (semanticActions != null) {
+            semanticActions.shift(currentToken);
+        }
         for (final var listener : observers) {
             listener.whenShift(currentStatus, currentToken);
         }
@@ -62,6 +67,9 @@ public class SyntaxAnalyzer {
      * @param production    待规约的产生式
      */
     public void callWhenInReduce(Status currentStatus, Production production) {
+        if (semanticActions != null) {
+            semanticActions.reduce(production);
+        }
         for (final var listener : observers) {
             listener.whenReduce(currentStatus, production);
         }
@@ -78,20 +86,55 @@ public class SyntaxAnalyzer {
         }
     }
 
+    /**
+     * 加载语义动作, 分析时由驱动程序维护属性栈并在移入与规约时直接执行对应的动作, 先于各观察者
+     *
+     * @param actions 语义动作, 其属性栈会被清空
+     */
+    public void loadSemanticActions(SemanticActions actions) {
+        actions.reset();
+        this.semanticActions = actions;
+    }
+
     public void loadTokens(Iterable<Token> tokens) {
         // TODO: 加载词法单元
         // 你可以自行选择要如何存储词法单元, 譬如使用迭代器, 或是栈, 或是干脆使用一个 list 全存起来
         // 需要注意的是, 在实现驱动程序的过程中, 你会需要面对只读取一个 token 而不能消耗它的情况,
         // 在自行设计的时候请加以考虑此种情况
-        for (Token token : tokens) {
-            tokenList.add(token);
-        }
+        // 直接在 tokens 上迭代, 不再复制一份
+        loadTokenStream(TokenStream.of(tokens));
+    }
+
+    /**
+     * 加载按需产生的词法单元流, 这样词法分析便与语法分析流水线化, 完整的词法单元列表不必存在于内存中
+     *
+     * @param tokens 词法单元流
+     */
+    public void loadTokenStream(TokenStream tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * @return 已加载的词法单元流, 供由分析表生成的专用分析器 (见 {@link GeneratedParser}) 使用
+     */
+    protected TokenStream getTokenStream() {
+        return tokens;
     }
 
     public void loadLRTable(LRTable table) {
         // TODO: 加载 LR 分析表
         // 你可以自行选择要如何使用该表格:
         // 是直接对 LRTable 调用 getAction/getGoto, 抑或是直接将 initStatus 存起来使用
+        // 编译为原始数组形式, 分析时查表只需要数组访问
+        this.lrTable = CompiledLRTable.compile(table);
+    }
+
+    /**
+     * 加载以整数编码的分析表, 比如对较大的文法使用压缩后的 {@link cn.edu.hitsz.compiler.parser.table.CompressedLRTable}
+     *
+     * @param table 分析表
+     */
+    public void loadLRTable(ParsingTable table) {
         this.lrTable = table;
     }
 
@@ -100,47 +143,51 @@ public class SyntaxAnalyzer {
         // 你需要根据上面的输入来实现 LR 语法分析的驱动程序
         // 请分别在遇到 Shift, Reduce, Accept 的时候调用上面的 callWhenInShift, callWhenInReduce, callWhenInAccept
         // 否则用于为实验二打分的产生式输出可能不会正常工作
-        Stack<Status> statusStack = new Stack<>();
-        statusStack.push(lrTable.getInit());
+        // 状态栈只存放状态编号, 仅在通知观察者时才取出对应的 Status 对象
+        int[] statusStack = new int[64];
+        int top = 0;
+        statusStack[top] = lrTable.getInit();
 
         while (true) {
-            Status currentStatus = statusStack.peek();
-            Token currentToken = getCurrentToken(); // 获取当前的词法单元
-            Action action = lrTable.getAction(currentStatus, currentToken);
-
-            switch (action.getKind()) {
-                case Shift:
-                    callWhenInShift(currentStatus, currentToken);
-                    statusStack.push(action.getStatus());
-                    advanceToken(); // 处理完当前词法单元后，前进到下一个
-                    break;
-
-                case Reduce:
-                    Production production = action.getProduction();
+            final var currentStatus = statusStack[top];
+            final var currentToken = tokens.peek(); // 获取当前的词法单元
+            final var action = lrTable.getAction(currentStatus, lrTable.getTerminalColumn(currentToken.getKind()));
+
+            switch (ParsingTable.kindOf(action)) {
+                case ParsingTable.SHIFT -> {
+                    callWhenInShift(lrTable.getStatus(currentStatus), currentToken);
+                    if (++top == statusStack.length) {
+                        statusStack = Arrays.copyOf(statusStack, statusStack.length * 2);
+                    }
+                    statusStack[top] = ParsingTable.targetOf(action);
+                    tokens.next(); // 处理完当前词法单元后，前进到下一个
+                }
+
+                case ParsingTable.REDUCE -> {
+                    final var production = ParsingTable.targetOf(action);
                     // 从状态栈中弹出相应数量的状态
-                    for (int i = 0; i < production.body().size(); i++) {
-                        statusStack.pop();
+                    top -= lrTable.getBodyLength(production);
+                    final var exposedStatus = statusStack[top];
+                    final var goto_ = lrTable.getGoto(exposedStatus, lrTable.getHeadColumn(production));
+                    if (goto_ == ParsingTable.NO_GOTO) {
+                        throw new RuntimeException("No goto from status %d on %s".formatted(
+                            exposedStatus, lrTable.getProduction(production).head()));
                     }
-                    currentStatus = statusStack.peek();
-                    statusStack.push(lrTable.getGoto(currentStatus, production.head()));
-                    callWhenInReduce(currentStatus, production);
-                    break;
+                    // 空产生式不弹出任何状态, 因此规约后状态栈同样可能增长
+                    if (++top == statusStack.length) {
+                        statusStack = Arrays.copyOf(statusStack, statusStack.length * 2);
+                    }
+                    statusStack[top] = goto_;
+                    callWhenInReduce(lrTable.getStatus(exposedStatus), lrTable.getProduction(production));
+                }
 
-                case Accept:
-                    callWhenInAccept(currentStatus);
+                case ParsingTable.ACCEPT -> {
+                    callWhenInAccept(lrTable.getStatus(currentStatus));
                     return;
+                }
 
-                default:
-                    throw new RuntimeException("Unexpected action: " + action);
+                default -> throw new RuntimeException("Unexpected token %s at status %d".formatted(currentToken, currentStatus));
             }
         }
     }
-
-    private Token getCurrentToken() {
-        return currentTokenIndex < tokenList.size() ? tokenList.get(currentTokenIndex) : null;
-    }
-
-    private void advanceToken() {
-        currentTokenIndex++;
-    }
 }
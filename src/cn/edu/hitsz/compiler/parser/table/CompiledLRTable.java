@@ -0,0 +1,200 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * 编译为原始数组形式的 LR 分析表
+ * <br>
+ * {@link LRTable} 中的每个状态都以 Map 保存 action 与 goto, 每次查表都要对文法符号的名字重新求哈希.
+ * 该类把整张表展平为两个 int 数组: ACTION 表以 "状态编号 * 终结符个数 + 终结符列号" 为下标, GOTO 表以
+ * "状态编号 * 非终结符个数 + 非终结符列号" 为下标. 终结符的列号可以直接由其码点查出, 因此分析时查表只需要几次数组访问.
+ * <br>
+ * 表项的编码见 {@link ParsingTable}.
+ * <br>
+ * 为了在分析时仍能向观察者传递 {@link Status} 与 {@link Production} 对象, 该类同时保存了以编号为下标的状态与产生式数组.
+ *
+ * @see CompressedLRTable 以行偏移压缩的形式保存的分析表
+ */
+public final class CompiledLRTable implements ParsingTable {
+    /**
+     * 编译 LR 分析表
+     *
+     * @param table 由 {@link TableGenerator} 或 {@link TableLoader} 得到的分析表
+     * @return 编译后的分析表
+     */
+    public static CompiledLRTable compile(LRTable table) {
+        final var statusList = table.getStatusInIndexOrder();
+        final var terminals = table.getTerminals();
+        final var nonTerminals = table.getNonTerminals();
+
+        final var stateCount = statusList.stream().mapToInt(Status::index).max().orElse(-1) + 1;
+        final var statuses = new Status[stateCount];
+        for (final var status : statusList) {
+            statuses[status.index()] = status;
+        }
+
+        // 以码点 + 1 为下标的终结符列号, 码点 -1 的 EOF 落在下标 0 上
+        final var maxCode = terminals.stream().mapToInt(TokenKind::getCode).max().orElse(-1);
+        final var columnOfCode = new int[maxCode + 2];
+        Arrays.fill(columnOfCode, -1);
+        for (int column = 0; column < terminals.size(); column++) {
+            columnOfCode[terminals.get(column).getCode() + 1] = column;
+        }
+
+        final var columnOfNonTerminal = new HashMap<NonTerminal, Integer>();
+        for (int column = 0; column < nonTerminals.size(); column++) {
+            columnOfNonTerminal.put(nonTerminals.get(column), column);
+        }
+
+        final var terminalCount = terminals.size();
+        final var nonTerminalCount = nonTerminals.size();
+        final var actions = new int[stateCount * terminalCount];
+        final var gotos = new int[stateCount * nonTerminalCount];
+        Arrays.fill(gotos, NO_GOTO);
+        var productions = new Production[0];
+
+        for (final var status : statusList) {
+            final var row = status.index();
+            for (int column = 0; column < terminalCount; column++) {
+                final var action = status.getAction(terminals.get(column));
+                actions[row * terminalCount + column] = switch (action.getKind()) {
+                    case Shift -> ParsingTable.encode(SHIFT, action.getStatus().index());
+                    case Reduce -> {
+                        final var production = action.getProduction();
+                        if (production.index() >= productions.length) {
+                            productions = Arrays.copyOf(productions, production.index() + 1);
+                        }
+                        productions[production.index()] = production;
+                        yield ParsingTable.encode(REDUCE, production.index());
+                    }
+                    case Accept -> ACCEPT;
+                    case Error -> ERROR;
+                };
+            }
+
+            for (int column = 0; column < nonTerminalCount; column++) {
+                final var target = status.getGoto(nonTerminals.get(column));
+                if (!target.isError()) {
+                    gotos[row * nonTerminalCount + column] = target.index();
+                }
+            }
+        }
+
+        final var headColumns = new int[productions.length];
+        final var bodyLengths = new int[productions.length];
+        for (final var production : productions) {
+            if (production != null) {
+                headColumns[production.index()] = columnOfNonTerminal.get(production.head());
+                bodyLengths[production.index()] = production.body().size();
+            }
+        }
+
+        return new CompiledLRTable(
+            table.getInit().index(), terminalCount, nonTerminalCount,
+            actions, gotos, columnOfCode, headColumns, bodyLengths, statuses, productions
+        );
+    }
+
+    @Override
+    public int getInit() {
+        return init;
+    }
+
+    @Override
+    public int getTerminalColumn(TokenKind kind) {
+        final var index = kind.getCode() + 1;
+        return index >= 0 && index < columnOfCode.length ? columnOfCode[index] : -1;
+    }
+
+    @Override
+    public int getAction(int state, int terminalColumn) {
+        return terminalColumn < 0 ? ERROR : actions[state * terminalCount + terminalColumn];
+    }
+
+    @Override
+    public int getGoto(int state, int nonTerminalColumn) {
+        return gotos[state * nonTerminalCount + nonTerminalColumn];
+    }
+
+    @Override
+    public int getHeadColumn(int production) {
+        return headColumns[production];
+    }
+
+    @Override
+    public int getBodyLength(int production) {
+        return bodyLengths[production];
+    }
+
+    @Override
+    public Status getStatus(int state) {
+        return statuses[state];
+    }
+
+    @Override
+    public Production getProduction(int production) {
+        return productions[production];
+    }
+
+    @Override
+    public int getStateCount() {
+        return statuses.length;
+    }
+
+    int getTerminalCount() {
+        return terminalCount;
+    }
+
+    int getNonTerminalCount() {
+        return nonTerminalCount;
+    }
+
+    int[] getColumnOfCode() {
+        return columnOfCode;
+    }
+
+    int[] getHeadColumns() {
+        return headColumns;
+    }
+
+    int[] getBodyLengths() {
+        return bodyLengths;
+    }
+
+    Status[] getStatuses() {
+        return statuses;
+    }
+
+    Production[] getProductions() {
+        return productions;
+    }
+
+    private CompiledLRTable(int init, int terminalCount, int nonTerminalCount,
+                            int[] actions, int[] gotos, int[] columnOfCode, int[] headColumns, int[] bodyLengths,
+                            Status[] statuses, Production[] productions) {
+        this.init = init;
+        this.terminalCount = terminalCount;
+        this.nonTerminalCount = nonTerminalCount;
+        this.actions = actions;
+        this.gotos = gotos;
+        this.columnOfCode = columnOfCode;
+        this.headColumns = headColumns;
+        this.bodyLengths = bodyLengths;
+        this.statuses = statuses;
+        this.productions = productions;
+    }
+
+    private final int init;
+    private final int terminalCount;
+    private final int nonTerminalCount;
+    private final int[] actions;
+    private final int[] gotos;
+    private final int[] columnOfCode;
+    private final int[] headColumns;
+    private final int[] bodyLengths;
+    private final Status[] statuses;
+    private final Production[] productions;
+}
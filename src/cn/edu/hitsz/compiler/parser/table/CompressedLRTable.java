@@ -0,0 +1,285 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * 以行偏移 (row displacement, 又称 comb vector) 压缩的 LR 分析表, 做法与 yacc/bison 相同
+ * <br>
+ * 分析表中绝大部分表项都是错误项. 压缩时, 首先为每个状态选出一个默认动作: 若该状态的 ACTION 行中有规约动作,
+ * 则取出现次数最多的那个规约, 否则为错误. 与默认动作相同的表项不再单独存放. 剩下的表项被看作一把 "梳子",
+ * 逐行 (表项多的行优先) 塞进一个共享的一维数组 table 中: 为每行找到一个偏移 base, 使该行的每一项 base + 列号 处都还空着.
+ * 另有一个同样长度的 check 数组记录每个位置存放的是哪一列, 查表时若 check[base[行] + 列号] 不是该列, 便返回该行的默认动作.
+ * 不同的行的偏移互不相同, 因此 check 足以区分各行; 内容完全相同的行则共用同一个偏移.
+ * <br>
+ * GOTO 表按列 (非终结符) 以同样的方式压缩, 默认项为该列中出现次数最多的目标状态. LR 分析中不会查到 GOTO 表的空项,
+ * 所以空项也不必存放.
+ * <br>
+ * 默认规约会把原本的一些错误项变成规约, 因此对于非法的输入, 错误可能在若干次规约之后才被发现, 但一定会在下一次移入之前被发现;
+ * 对于合法的输入, 分析过程与未压缩的表完全相同.
+ *
+ * @see CompiledLRTable 未压缩的分析表
+ */
+public final class CompressedLRTable implements ParsingTable {
+    /**
+     * 压缩 LR 分析表
+     *
+     * @param table 由 {@link TableGenerator} 或 {@link TableLoader} 得到的分析表
+     * @return 压缩后的分析表
+     */
+    public static CompressedLRTable compress(LRTable table) {
+        return compress(CompiledLRTable.compile(table));
+    }
+
+    /**
+     * 压缩已编译的 LR 分析表
+     *
+     * @param table 已编译的分析表
+     * @return 压缩后的分析表
+     */
+    public static CompressedLRTable compress(CompiledLRTable table) {
+        final var stateCount = table.getStateCount();
+        final var terminalCount = table.getTerminalCount();
+        final var nonTerminalCount = table.getNonTerminalCount();
+
+        // ACTION 表: 每个状态一行, 默认动作为出现最多的规约
+        final var defaultActions = new int[stateCount];
+        final var actionRows = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            final var row = new int[terminalCount];
+            for (int column = 0; column < terminalCount; column++) {
+                row[column] = table.getAction(state, column);
+            }
+            defaultActions[state] = mostFrequent(row, ERROR, action -> ParsingTable.kindOf(action) == REDUCE);
+            actionRows[state] = row;
+        }
+        final var actionComb = Comb.pack(actionRows, defaultActions, ERROR);
+
+        // GOTO 表: 每个非终结符一列, 默认项为出现最多的目标状态
+        final var defaultGotos = new int[nonTerminalCount];
+        final var gotoColumns = new int[nonTerminalCount][];
+        for (int column = 0; column < nonTerminalCount; column++) {
+            final var gotoColumn = new int[stateCount];
+            for (int state = 0; state < stateCount; state++) {
+                gotoColumn[state] = table.getGoto(state, column);
+            }
+            defaultGotos[column] = mostFrequent(gotoColumn, NO_GOTO, goto_ -> goto_ != NO_GOTO);
+            gotoColumns[column] = gotoColumn;
+        }
+        final var gotoComb = Comb.pack(gotoColumns, defaultGotos, NO_GOTO);
+
+        return new CompressedLRTable(table, actionComb, defaultActions, gotoComb, defaultGotos);
+    }
+
+    @Override
+    public int getInit() {
+        return init;
+    }
+
+    @Override
+    public int getTerminalColumn(TokenKind kind) {
+        final var index = kind.getCode() + 1;
+        return index >= 0 && index < columnOfCode.length ? columnOfCode[index] : -1;
+    }
+
+    @Override
+    public int getAction(int state, int terminalColumn) {
+        if (terminalColumn < 0) {
+            return ERROR;
+        }
+        return actionComb.get(state, terminalColumn, defaultActions[state]);
+    }
+
+    @Override
+    public int getGoto(int state, int nonTerminalColumn) {
+        return gotoComb.get(nonTerminalColumn, state, defaultGotos[nonTerminalColumn]);
+    }
+
+    @Override
+    public int getHeadColumn(int production) {
+        return headColumns[production];
+    }
+
+    @Override
+    public int getBodyLength(int production) {
+        return bodyLengths[production];
+    }
+
+    @Override
+    public Status getStatus(int state) {
+        return statuses[state];
+    }
+
+    @Override
+    public Production getProduction(int production) {
+        return productions[production];
+    }
+
+    @Override
+    public int getStateCount() {
+        return statuses.length;
+    }
+
+    /**
+     * @return 压缩后 ACTION 与 GOTO 两张表所占的 int 个数 (包括 base, check 与默认项), 用于与未压缩的表比较
+     */
+    public int getPackedSize() {
+        return actionComb.size() + defaultActions.length + gotoComb.size() + defaultGotos.length;
+    }
+
+    /**
+     * 选出向量中满足条件的出现次数最多的值, 次数相同时取先出现的
+     */
+    private static int mostFrequent(int[] vector, int fallback, IntPredicate candidate) {
+        final var counts = new HashMap<Integer, Integer>();
+        var best = fallback;
+        var bestCount = 0;
+        for (final var value : vector) {
+            if (!candidate.test(value)) {
+                continue;
+            }
+            final var count = counts.merge(value, 1, Integer::sum);
+            if (count > bestCount) {
+                best = value;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 若干向量以行偏移方式压进的同一个一维数组
+     *
+     * @param base  每个向量的偏移
+     * @param table 共享的表项数组
+     * @param check 每个位置存放的表项在其向量中的下标, 空位为 -1
+     */
+    private record Comb(int[] base, int[] table, int[] check) {
+        /**
+         * @param vectors  待压缩的向量
+         * @param defaults 各向量的默认项, 与之相同的表项不存放
+         * @param blank    代表空表项 (错误) 的值, 这样的表项也不存放, 查表时得到的是默认项
+         * @return 压缩结果
+         */
+        static Comb pack(int[][] vectors, int[] defaults, int blank) {
+            final var base = new int[vectors.length];
+            var table = new int[16];
+            var check = new int[16];
+            Arrays.fill(check, -1);
+            var used = 0;
+
+            // 已经用过的偏移, 以及内容相同的向量 (连同默认项) 所共用的偏移
+            final var usedOffsets = new BitSet();
+            final var offsetOfVector = new HashMap<List<Integer>, Integer>();
+
+            // 表项多的向量先放, 它们最难找到位置
+            final var order = IntStream.range(0, vectors.length).boxed()
+                .sorted(Comparator.comparingInt((Integer v) -> -explicitCount(vectors[v], defaults[v], blank)))
+                .mapToInt(Integer::intValue).toArray();
+
+            for (final var vector : order) {
+                final var entries = vectors[vector];
+                final var defaultValue = defaults[vector];
+
+                final var key = new ArrayList<Integer>(entries.length + 1);
+                key.add(defaultValue);
+                for (final var entry : entries) {
+                    key.add(entry);
+                }
+                final var shared = offsetOfVector.get(key);
+                if (shared != null) {
+                    base[vector] = shared;
+                    continue;
+                }
+
+                var offset = 0;
+                while (usedOffsets.get(offset) || !fits(check, entries, defaultValue, blank, offset)) {
+                    offset++;
+                }
+                base[vector] = offset;
+                usedOffsets.set(offset);
+                offsetOfVector.put(key, offset);
+
+                for (int i = 0; i < entries.length; i++) {
+                    if (entries[i] == defaultValue || entries[i] == blank) {
+                        continue;
+                    }
+                    final var position = offset + i;
+                    if (position >= table.length) {
+                        final var oldLength = table.length;
+                        final var newLength = Math.max(oldLength * 2, position + 1);
+                        table = Arrays.copyOf(table, newLength);
+                        check = Arrays.copyOf(check, newLength);
+                        Arrays.fill(check, oldLength, newLength, -1);
+                    }
+                    table[position] = entries[i];
+                    check[position] = i;
+                    used = Math.max(used, position + 1);
+                }
+            }
+
+            return new Comb(base, Arrays.copyOf(table, used), Arrays.copyOf(check, used));
+        }
+
+        int get(int vector, int index, int defaultValue) {
+            final var position = base[vector] + index;
+            return position < check.length && check[position] == index ? table[position] : defaultValue;
+        }
+
+        int size() {
+            return base.length + table.length + check.length;
+        }
+
+        private static boolean fits(int[] check, int[] entries, int defaultValue, int blank, int offset) {
+            for (int i = 0; i < entries.length; i++) {
+                final var position = offset + i;
+                if (entries[i] != defaultValue && entries[i] != blank && position < check.length && check[position] != -1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int explicitCount(int[] entries, int defaultValue, int blank) {
+            var count = 0;
+            for (final var entry : entries) {
+                if (entry != defaultValue && entry != blank) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private CompressedLRTable(CompiledLRTable table, Comb actionComb, int[] defaultActions, Comb gotoComb, int[] defaultGotos) {
+        this.init = table.getInit();
+        this.columnOfCode = table.getColumnOfCode();
+        this.headColumns = table.getHeadColumns();
+        this.bodyLengths = table.getBodyLengths();
+        this.statuses = table.getStatuses();
+        this.productions = table.getProductions();
+        this.actionComb = actionComb;
+        this.defaultActions = defaultActions;
+        this.gotoComb = gotoComb;
+        this.defaultGotos = defaultGotos;
+    }
+
+    private final int init;
+    private final int[] columnOfCode;
+    private final int[] headColumns;
+    private final int[] bodyLengths;
+    private final Status[] statuses;
+    private final Production[] productions;
+    private final Comb actionComb;
+    private final int[] defaultActions;
+    private final Comb gotoComb;
+    private final int[] defaultGotos;
+}
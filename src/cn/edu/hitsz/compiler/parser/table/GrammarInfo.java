@@ -27,15 +27,20 @@ public class GrammarInfo {
             final var line = lines.get(idx);
             // 形如 `A -> B ( id intConst ) C;` 的产生式
             // 先删除分号, 按 -> 切, 再按空格切 body
+            // 体为空的产生式 (A -> ;) 代表 A 可以推导出空串
             final var withoutComma = line.replace(";", "");
-            final var words = withoutComma.split(" -> ");
-            final var headString = words[0];
-            final var bodyStrings = words[1].split(" ");
+            final var words = withoutComma.split("->", 2);
+            final var headString = words[0].strip();
+            final var bodyStrings = words[1].strip().split(" ");
 
             final var head = getOrCreateNonTerminal(headString);
 
             final var body = new ArrayList<Term>();
             for (final var termName : bodyStrings) {
+                if (termName.isEmpty()) {
+                    continue;
+                }
+
                 if (TokenKind.isAllowed(termName)) {
                     body.add(TokenKind.fromString(termName));
                 } else {
@@ -47,19 +52,19 @@ public class GrammarInfo {
             final var production = new Production(idx + 1, head, body);
             productionsInOrder.add(production);
             productions.put(withoutComma, production);
+            // 分析表中的规约动作以产生式的 toString 表示, 对空产生式而言二者并不相同
+            productions.putIfAbsent(production.toString(), production);
         }
     }
 
     // 为了防止有人看不懂, 就不用枚举定义单例了
-    // 顺手写个懒加载
-    private static GrammarInfo instance = null;
+    // 顺手写个懒加载: 以静态内部类持有实例, 由类的初始化保证只构造一次, 并且多个线程同时访问时也能看到构造完成的实例
+    private static final class Holder {
+        private static final GrammarInfo instance = new GrammarInfo();
+    }
 
     private static GrammarInfo getInstance() {
-        if (instance == null) {
-            instance = new GrammarInfo();
-        }
-
-        return instance;
+        return Holder.instance;
     }
 
     public static Map<String, NonTerminal> getNonTerminals() {
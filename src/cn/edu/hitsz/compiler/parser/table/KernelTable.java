@@ -0,0 +1,95 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.Arrays;
+
+/**
+ * 项目集核的驻留表
+ * <br>
+ * 构造规范项目集族时, 每个项目集都由其核 (以整数编码的项目按升序排成的数组) 唯一确定. 该表为每个不同的核分配一个从 0 开始的
+ * 稠密编号, 即其对应的状态编号. 核的哈希值只在加入时计算一次并与核一同保存, 探测时先比较哈希值, 相同时才逐项比较数组.
+ * <br>
+ * 实现上与 {@link cn.edu.hitsz.compiler.symtab.IdentifierPool} 相同, 采用开放寻址 (线性探测) 的哈希表, 表中只存放编号.
+ */
+final class KernelTable {
+    KernelTable() {
+        Arrays.fill(slots, NOT_FOUND);
+    }
+
+    static final int NOT_FOUND = -1;
+
+    /**
+     * @param kernel 升序排列的项目
+     * @return 核的哈希值
+     */
+    static int hash(int[] kernel) {
+        final var hash = Arrays.hashCode(kernel);
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * 查找核的编号, 若不在表中则将其加入
+     *
+     * @param kernel 升序排列的项目, 加入后不应再修改
+     * @param hash   由 {@link #hash(int[])} 算出的哈希值
+     * @return 核的编号; 若该核是新加入的, 则编号等于加入前的 {@link #size()}
+     */
+    int intern(int[] kernel, int hash) {
+        int slot = hash & (slots.length - 1);
+        while (slots[slot] != NOT_FOUND) {
+            final var id = slots[slot];
+            if (hashes[id] == hash && Arrays.equals(kernels[id], kernel)) {
+                return id;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+
+        if (size == kernels.length) {
+            kernels = Arrays.copyOf(kernels, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        final var id = size++;
+        kernels[id] = kernel;
+        hashes[id] = hash;
+        slots[slot] = id;
+
+        // 保持装载因子不超过 1/2
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * @param id 编号
+     * @return 该编号的核
+     */
+    int[] get(int id) {
+        return kernels[id];
+    }
+
+    /**
+     * @return 表中核的个数
+     */
+    int size() {
+        return size;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, NOT_FOUND);
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & (slots.length - 1);
+            while (slots[slot] != NOT_FOUND) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = id;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+    private int[][] kernels = new int[INITIAL_CAPACITY][];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size = 0;
+}
@@ -0,0 +1,266 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以 DeRemer-Pennello 算法在 LR(0) 自动机上计算 LALR(1) 向前看符号
+ * <br>
+ * 记 LR(0) 自动机中状态 p 经非终结符 A 的转移为 (p, A). 算法依次计算:
+ * <ul>
+ *     <li>DR(p, A): 从 GOTO(p, A) 出发可以直接移入的终结符;</li>
+ *     <li>reads: 若 r = GOTO(p, A) 且 C 可空, 则 (p, A) reads (r, C). 由此得 Read(p, A) = DR(p, A) 沿 reads 的传递闭包;</li>
+ *     <li>includes: 若 B -> beta A gamma, gamma 可空, 且 p' 经 beta 到达 p, 则 (p, A) includes (p', B).
+ *     由此得 Follow(p, A) = Read(p, A) 沿 includes 的传递闭包;</li>
+ *     <li>lookback: 若 p 经 omega 到达 q, 则 q 中的完成项目 A -> omega . lookback (p, A).
+ *     LA(q, A -> omega) 即为它 lookback 的所有转移的 Follow 之并.</li>
+ * </ul>
+ * 两次求传递闭包都使用 DeRemer 与 Pennello 给出的 Digraph 算法, 它在求闭包的同时找出强连通分量, 每条边只处理一次.
+ * <br>
+ * 文法符号的编号与 {@link TableGenerator} 相同: 非终结符在前, 终结符 t 的编号为非终结符个数 + t.
+ */
+final class LALRLookaheads {
+    /**
+     * @param nonTerminalCount 非终结符个数
+     * @param terminalCount    终结符个数
+     * @param eof              EOF 的终结符序号
+     * @param nullable         以非终结符序号为下标, 其是否可空
+     * @param headOf           以产生式下标为下标, 产生式头的非终结符序号, 第一条为增广产生式
+     * @param bodyLengthOf     以产生式下标为下标, 产生式体的长度
+     * @param itemWidth        项目编码中每条产生式所占的宽度
+     * @param afterDotOfItem   以项目为下标, 点后面的文法符号编号, 点在末尾时为 -1
+     * @param itemsOfState     以状态编号为下标, 该状态的项目集
+     * @param gotoEdges        以状态编号为下标, 该状态经各文法符号转移到的状态编号, 没有转移时为 -1
+     */
+    LALRLookaheads(int nonTerminalCount, int terminalCount, int eof, boolean[] nullable,
+                   int[] headOf, int[] bodyLengthOf, int itemWidth, int[] afterDotOfItem,
+                   List<int[]> itemsOfState, List<int[]> gotoEdges) {
+        this.nonTerminalCount = nonTerminalCount;
+        this.terminalCount = terminalCount;
+        this.eof = eof;
+        this.nullable = nullable;
+        this.headOf = headOf;
+        this.bodyLengthOf = bodyLengthOf;
+        this.itemWidth = itemWidth;
+        this.afterDotOfItem = afterDotOfItem;
+        this.itemsOfState = itemsOfState;
+        this.gotoEdges = gotoEdges;
+    }
+
+    /**
+     * 计算所有完成项目的向前看符号
+     */
+    void compute() {
+        numberTransitions();
+        final var read = digraph(directReads(), reads());
+        final var follow = digraph(read, includesAndLookback());
+
+        for (final var entry : lookback.entrySet()) {
+            final var lookahead = new BitSet(terminalCount);
+            for (final var transition : entry.getValue()) {
+                lookahead.or(follow[transition]);
+            }
+            lookaheads.put(entry.getKey(), lookahead);
+        }
+    }
+
+    /**
+     * @param state 状态编号
+     * @param item  该状态中的完成项目
+     * @return 该项目的向前看符号, 以终结符序号为下标
+     */
+    BitSet get(int state, int item) {
+        return lookaheads.getOrDefault(key(state, item), EMPTY);
+    }
+
+    private void numberTransitions() {
+        transitionOf = new int[itemsOfState.size()][];
+        for (int state = 0; state < itemsOfState.size(); state++) {
+            final var edges = gotoEdges.get(state);
+            transitionOf[state] = new int[nonTerminalCount];
+            for (int nonTerminal = 0; nonTerminal < nonTerminalCount; nonTerminal++) {
+                if (edges[nonTerminal] >= 0) {
+                    transitionOf[state][nonTerminal] = transitionFrom.size();
+                    transitionFrom.add(state);
+                    transitionSymbol.add(nonTerminal);
+                } else {
+                    transitionOf[state][nonTerminal] = -1;
+                }
+            }
+        }
+    }
+
+    private int target(int transition) {
+        return gotoEdges.get(transitionFrom.get(transition))[transitionSymbol.get(transition)];
+    }
+
+    /**
+     * @return 以转移编号为下标的 DR 集合
+     */
+    private BitSet[] directReads() {
+        final var result = new BitSet[transitionFrom.size()];
+        // 增广产生式 S -> S' 的完成项目, 到达含有它的状态后遇到 EOF 就接受
+        final var acceptItem = 1;
+        for (int transition = 0; transition < result.length; transition++) {
+            final var target = target(transition);
+            final var edges = gotoEdges.get(target);
+            result[transition] = new BitSet(terminalCount);
+            for (int terminal = 0; terminal < terminalCount; terminal++) {
+                if (edges[nonTerminalCount + terminal] >= 0) {
+                    result[transition].set(terminal);
+                }
+            }
+            if (Arrays.stream(itemsOfState.get(target)).anyMatch(item -> item == acceptItem)) {
+                result[transition].set(eof);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 以转移编号为下标, reads 关系的边
+     */
+    private List<List<Integer>> reads() {
+        final var result = new ArrayList<List<Integer>>();
+        for (int transition = 0; transition < transitionFrom.size(); transition++) {
+            final var target = target(transition);
+            final var edges = new ArrayList<Integer>();
+            for (int nonTerminal = 0; nonTerminal < nonTerminalCount; nonTerminal++) {
+                if (nullable[nonTerminal] && transitionOf[target][nonTerminal] >= 0) {
+                    edges.add(transitionOf[target][nonTerminal]);
+                }
+            }
+            result.add(edges);
+        }
+        return result;
+    }
+
+    /**
+     * 沿每个非终结符转移 (p', B) 的每条产生式 B -> X1 ... Xn 走一遍自动机, 同时得到 includes 与 lookback 关系
+     *
+     * @return 以转移编号为下标, includes 关系的边
+     */
+    private List<List<Integer>> includesAndLookback() {
+        final var result = new ArrayList<List<Integer>>();
+        for (int transition = 0; transition < transitionFrom.size(); transition++) {
+            result.add(new ArrayList<>());
+        }
+
+        // 以非终结符序号为下标, 以其为头的产生式的下标
+        final var productionsOf = new ArrayList<List<Integer>>();
+        for (int nonTerminal = 0; nonTerminal < nonTerminalCount; nonTerminal++) {
+            productionsOf.add(new ArrayList<>());
+        }
+        for (int p = 0; p < headOf.length; p++) {
+            productionsOf.get(headOf[p]).add(p);
+        }
+
+        final var path = new int[itemWidth];
+        for (int transition = 0; transition < transitionFrom.size(); transition++) {
+            final var from = transitionFrom.get(transition);
+            for (final var p : productionsOf.get(transitionSymbol.get(transition))) {
+                final var length = bodyLengthOf[p];
+
+                // path[i] 为读入产生式体的前 i 个符号后到达的状态
+                path[0] = from;
+                for (int i = 0; i < length; i++) {
+                    path[i + 1] = gotoEdges.get(path[i])[afterDotOfItem[p * itemWidth + i]];
+                }
+
+                // 从后往前, 只要后缀可空, 其前面的非终结符所在的转移就 includes 当前转移
+                for (int i = length - 1; i >= 0; i--) {
+                    final var symbol = afterDotOfItem[p * itemWidth + i];
+                    if (symbol < nonTerminalCount) {
+                        result.get(transitionOf[path[i]][symbol]).add(transition);
+                    }
+                    if (symbol >= nonTerminalCount || !nullable[symbol]) {
+                        break;
+                    }
+                }
+
+                lookback.computeIfAbsent(key(path[length], p * itemWidth + length), k -> new ArrayList<>()).add(transition);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * DeRemer-Pennello 的 Digraph 算法: 求 F(x) = F'(x) ∪ ⋃{F(y) | x R y}
+     *
+     * @param initial 以结点编号为下标的 F', 会被就地修改为 F
+     * @param edges   关系 R
+     * @return F
+     */
+    private static BitSet[] digraph(BitSet[] initial, List<List<Integer>> edges) {
+        final var result = new BitSet[initial.length];
+        for (int x = 0; x < initial.length; x++) {
+            result[x] = (BitSet) initial[x].clone();
+        }
+
+        final var depth = new int[initial.length];
+        final var stack = new ArrayDeque<Integer>();
+        for (int x = 0; x < initial.length; x++) {
+            if (depth[x] == 0) {
+                traverse(x, result, edges, depth, stack);
+            }
+        }
+        return result;
+    }
+
+    private static void traverse(int x, BitSet[] f, List<List<Integer>> edges, int[] depth, ArrayDeque<Integer> stack) {
+        stack.push(x);
+        final var d = stack.size();
+        depth[x] = d;
+
+        for (final var y : edges.get(x)) {
+            if (depth[y] == 0) {
+                traverse(y, f, edges, depth, stack);
+            }
+            depth[x] = Math.min(depth[x], depth[y]);
+            f[x].or(f[y]);
+        }
+
+        // x 是一个强连通分量的根, 分量内的结点的 F 都相同
+        if (depth[x] == d) {
+            while (true) {
+                final var top = stack.pop();
+                depth[top] = Integer.MAX_VALUE;
+                if (top == x) {
+                    break;
+                }
+                f[top] = f[x];
+            }
+        }
+    }
+
+    private static long key(int state, int item) {
+        return ((long) state << 32) | item;
+    }
+
+    private static final BitSet EMPTY = new BitSet();
+
+    private final int nonTerminalCount;
+    private final int terminalCount;
+    private final int eof;
+    private final boolean[] nullable;
+    private final int[] headOf;
+    private final int[] bodyLengthOf;
+    private final int itemWidth;
+    private final int[] afterDotOfItem;
+    private final List<int[]> itemsOfState;
+    private final List<int[]> gotoEdges;
+
+    // 非终结符转移 (p, A) 的编号
+    private int[][] transitionOf;
+    private final List<Integer> transitionFrom = new ArrayList<>();
+    private final List<Integer> transitionSymbol = new ArrayList<>();
+
+    // (状态, 完成项目) -> 其 lookback 的转移, 以及由此得到的向前看符号
+    private final Map<Long, List<Integer>> lookback = new HashMap<>();
+    private final Map<Long, BitSet> lookaheads = new HashMap<>();
+}
@@ -0,0 +1,381 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以 Pager 的弱相容合并构造 LR(1) 项目集族
+ * <br>
+ * 规范 LR(1) 项目集族中, 同一个 LR(0) 核往往对应许多只有向前看符号不同的状态, 分析表因此比 LALR(1) 大得多;
+ * 而 LALR(1) 把同核的状态一律合并, 可能引入原本没有的规约-规约冲突. Pager 的做法介于二者之间:
+ * 新产生的项目集若与某个已有的同核状态 "弱相容", 就把向前看符号并入该状态, 否则另建一个状态.
+ * <br>
+ * 设两个同核状态的核项目依次为 I1 ... In, 向前看符号分别为 L1 ... Ln 与 M1 ... Mn. 二者弱相容, 当且仅当对任意 i != j,
+ * Li ∩ Mj 与 Mi ∩ Lj 均为空, 或 Li ∩ Lj 非空, 或 Mi ∩ Mj 非空. 弱相容的状态合并后不会产生规范 LR(1) 中没有的冲突,
+ * 所以对 LALR(1) 文法得到的状态数与 LALR(1) 相同, 对需要完整 LR(1) 能力的文法也只多出必要的状态.
+ * <br>
+ * 合并使已有状态的向前看符号变多时, 需要重新求该状态的闭包并向后继传播, 因此以工作表的方式构造.
+ * 传播后原来的后继可能不再弱相容而改连到别的状态, 所以最后从初始状态出发按 BFS 重新编号, 丢弃不可达的状态.
+ * <br>
+ * 项目与文法符号的编码与 {@link TableGenerator} 相同: 非终结符在前, 终结符 t 的编号为非终结符个数 + t;
+ * 向前看符号是以终结符序号为下标的位集.
+ */
+final class LR1Collection {
+    /**
+     * @param nonTerminalCount 非终结符个数
+     * @param terminalCount    终结符个数
+     * @param eof              EOF 的终结符序号
+     * @param nullable         以非终结符序号为下标, 其是否可空
+     * @param first            以非终结符序号为下标, 其 FIRST 集合
+     * @param itemWidth        项目编码中每条产生式所占的宽度
+     * @param afterDotOfItem   以项目为下标, 点后面的文法符号编号, 点在末尾时为 -1
+     * @param initialItemsOf   以非终结符序号为下标, 以其为头的产生式的点在开头的项目
+     */
+    LR1Collection(int nonTerminalCount, int terminalCount, int eof, boolean[] nullable, BitSet[] first,
+                  int itemWidth, int[] afterDotOfItem, int[][] initialItemsOf) {
+        this.nonTerminalCount = nonTerminalCount;
+        this.terminalCount = terminalCount;
+        this.eof = eof;
+        this.itemWidth = itemWidth;
+        this.afterDotOfItem = afterDotOfItem;
+        this.initialItemsOf = initialItemsOf;
+        this.positionOf = new int[afterDotOfItem.length];
+        this.stampOf = new int[afterDotOfItem.length];
+        calcFirstOfSuffix(nullable, first);
+    }
+
+    /**
+     * 构造项目集族
+     */
+    void construct() {
+        final var initLookahead = new BitSet(terminalCount);
+        initLookahead.set(eof);
+        addState(new int[]{0}, new BitSet[]{initLookahead});
+
+        while (!worklist.isEmpty()) {
+            final var state = worklist.poll();
+            inWorklist.set(state, false);
+            explore(state);
+        }
+
+        renumber();
+    }
+
+    /**
+     * @return 以状态编号为下标, 该状态的项目集 (核在前, 其余按加入闭包的顺序)
+     */
+    List<int[]> getItemsOfState() {
+        return itemsOfState;
+    }
+
+    /**
+     * @return 以状态编号为下标, 该状态经各文法符号转移到的状态编号, 没有转移时为 -1
+     */
+    List<int[]> getGotoEdges() {
+        return gotoEdges;
+    }
+
+    /**
+     * @param state 状态编号
+     * @param item  该状态中的完成项目
+     * @return 该项目的向前看符号, 以终结符序号为下标
+     */
+    BitSet get(int state, int item) {
+        return lookaheads.getOrDefault(key(state, item), EMPTY);
+    }
+
+    /**
+     * 对项目 A -> alpha . beta 计算 FIRST(beta) 以及 beta 是否可空
+     */
+    private void calcFirstOfSuffix(boolean[] nullable, BitSet[] first) {
+        firstOfSuffix = new BitSet[afterDotOfItem.length];
+        nullableSuffix = new boolean[afterDotOfItem.length];
+        for (int p = 0; p * itemWidth < afterDotOfItem.length; p++) {
+            // 从产生式末尾往前推
+            var dot = 0;
+            while (afterDotOfItem[p * itemWidth + dot] >= 0) {
+                dot++;
+            }
+
+            var suffixFirst = new BitSet(terminalCount);
+            var suffixNullable = true;
+            for (; dot >= 0; dot--) {
+                final var item = p * itemWidth + dot;
+                final var symbol = afterDotOfItem[item];
+                if (symbol >= nonTerminalCount) {
+                    suffixFirst = new BitSet(terminalCount);
+                    suffixFirst.set(symbol - nonTerminalCount);
+                    suffixNullable = false;
+                } else if (symbol >= 0) {
+                    final var next = (BitSet) first[symbol].clone();
+                    if (nullable[symbol]) {
+                        next.or(suffixFirst);
+                    }
+                    suffixFirst = next;
+                    suffixNullable &= nullable[symbol];
+                }
+                firstOfSuffix[item] = suffixFirst;
+                nullableSuffix[item] = suffixNullable;
+            }
+        }
+    }
+
+    /**
+     * 新建一个状态并加入工作表
+     *
+     * @return 状态编号
+     */
+    private int addState(int[] kernel, BitSet[] kernelLookahead) {
+        final var core = coreTable.intern(kernel, KernelTable.hash(kernel));
+        if (core == statesOfCore.size()) {
+            statesOfCore.add(new ArrayList<>());
+        }
+
+        final var state = kernels.size();
+        statesOfCore.get(core).add(state);
+        kernels.add(kernel);
+        kernelLookaheads.add(kernelLookahead);
+        closures.add(null);
+        closureLookaheads.add(null);
+        edgesOfState.add(null);
+        enqueue(state);
+        return state;
+    }
+
+    private void enqueue(int state) {
+        if (!inWorklist.get(state)) {
+            inWorklist.set(state);
+            worklist.add(state);
+        }
+    }
+
+    /**
+     * 求状态的闭包, 再找到 (或新建) 其各个后继
+     */
+    private void explore(int state) {
+        final var lookaheadsOut = new ArrayList<BitSet>();
+        final var items = constructClosure(kernels.get(state), kernelLookaheads.get(state), lookaheadsOut);
+        closures.set(state, items);
+        closureLookaheads.set(state, lookaheadsOut);
+
+        // 按点后的文法符号分组, 点后移一位即为后继的核; 同一组中的项目互不相同, 点后移后也互不相同
+        final var groups = new HashMap<Integer, List<Integer>>();
+        for (int i = 0; i < items.length; i++) {
+            final var symbol = afterDotOfItem[items[i]];
+            if (symbol >= 0) {
+                groups.computeIfAbsent(symbol, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        final var edges = new int[nonTerminalCount + terminalCount];
+        Arrays.fill(edges, -1);
+        for (int symbol = 0; symbol < edges.length; symbol++) {
+            final var group = groups.get(symbol);
+            if (group == null) {
+                continue;
+            }
+
+            group.sort((a, b) -> Integer.compare(items[a], items[b]));
+            final var kernel = new int[group.size()];
+            final var kernelLookahead = new BitSet[group.size()];
+            for (int i = 0; i < group.size(); i++) {
+                kernel[i] = items[group.get(i)] + 1;
+                kernelLookahead[i] = lookaheadsOut.get(group.get(i));
+            }
+            edges[symbol] = findOrMerge(kernel, kernelLookahead);
+        }
+        edgesOfState.set(state, edges);
+    }
+
+    /**
+     * 找到与给定项目集弱相容的同核状态并把向前看符号并入, 若没有则新建状态
+     *
+     * @return 状态编号
+     */
+    private int findOrMerge(int[] kernel, BitSet[] kernelLookahead) {
+        final var core = coreTable.intern(kernel, KernelTable.hash(kernel));
+        if (core < statesOfCore.size()) {
+            for (final var candidate : statesOfCore.get(core)) {
+                final var existing = kernelLookaheads.get(candidate);
+                if (!isWeaklyCompatible(existing, kernelLookahead)) {
+                    continue;
+                }
+
+                var changed = false;
+                for (int i = 0; i < existing.length; i++) {
+                    final var before = existing[i].cardinality();
+                    existing[i].or(kernelLookahead[i]);
+                    changed |= existing[i].cardinality() != before;
+                }
+                if (changed) {
+                    enqueue(candidate);
+                }
+                return candidate;
+            }
+        }
+
+        final var copy = new BitSet[kernelLookahead.length];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = (BitSet) kernelLookahead[i].clone();
+        }
+        return addState(kernel, copy);
+    }
+
+    private static boolean isWeaklyCompatible(BitSet[] l, BitSet[] m) {
+        for (int i = 0; i < l.length; i++) {
+            for (int j = i + 1; j < l.length; j++) {
+                if ((l[i].intersects(m[j]) || m[i].intersects(l[j]))
+                    && !l[i].intersects(l[j])
+                    && !m[i].intersects(m[j])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 求 LR(1) 闭包
+     * <br>
+     * 对 A -> alpha . B beta, a, 加入 B -> . gamma, FIRST(beta a). 某个项目的向前看符号变多时, 它展开出的项目也要随之更新,
+     * 所以用一个工作表迭代到不动点.
+     *
+     * @param kernel          核
+     * @param kernelLookahead 核中各项目的向前看符号
+     * @param lookaheadsOut   输出闭包中各项目的向前看符号
+     * @return 闭包中的项目, 核在前, 其余按加入的顺序
+     */
+    private int[] constructClosure(int[] kernel, BitSet[] kernelLookahead, List<BitSet> lookaheadsOut) {
+        stamp++;
+        final var items = new ArrayList<Integer>();
+        final var queue = new ArrayDeque<Integer>();
+        final var queued = new BitSet();
+        for (int i = 0; i < kernel.length; i++) {
+            positionOf[kernel[i]] = i;
+            stampOf[kernel[i]] = stamp;
+            items.add(kernel[i]);
+            lookaheadsOut.add((BitSet) kernelLookahead[i].clone());
+            queue.add(i);
+            queued.set(i);
+        }
+
+        while (!queue.isEmpty()) {
+            final var position = queue.poll();
+            queued.clear(position);
+            final var item = items.get(position);
+            final var symbol = afterDotOfItem[item];
+            if (symbol < 0 || symbol >= nonTerminalCount) {
+                continue;
+            }
+
+            final var lookahead = (BitSet) firstOfSuffix[item + 1].clone();
+            if (nullableSuffix[item + 1]) {
+                lookahead.or(lookaheadsOut.get(position));
+            }
+
+            for (final var initial : initialItemsOf[symbol]) {
+                if (stampOf[initial] != stamp) {
+                    stampOf[initial] = stamp;
+                    positionOf[initial] = items.size();
+                    queue.add(items.size());
+                    queued.set(items.size());
+                    items.add(initial);
+                    lookaheadsOut.add((BitSet) lookahead.clone());
+                } else {
+                    final var target = lookaheadsOut.get(positionOf[initial]);
+                    final var before = target.cardinality();
+                    target.or(lookahead);
+                    if (target.cardinality() != before && !queued.get(positionOf[initial])) {
+                        queue.add(positionOf[initial]);
+                        queued.set(positionOf[initial]);
+                    }
+                }
+            }
+        }
+
+        return items.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * 从初始状态出发按 BFS (后继按文法符号的顺序) 重新编号, 丢弃合并后不再可达的状态, 并记下各完成项目的向前看符号
+     */
+    private void renumber() {
+        final var newIndexOf = new int[kernels.size()];
+        Arrays.fill(newIndexOf, -1);
+        final var order = new ArrayList<Integer>();
+        newIndexOf[0] = 0;
+        order.add(0);
+        for (int i = 0; i < order.size(); i++) {
+            for (final var to : edgesOfState.get(order.get(i))) {
+                if (to >= 0 && newIndexOf[to] < 0) {
+                    newIndexOf[to] = order.size();
+                    order.add(to);
+                }
+            }
+        }
+
+        for (int index = 0; index < order.size(); index++) {
+            final var state = order.get(index);
+            final var items = closures.get(state);
+            itemsOfState.add(items);
+
+            final var edges = edgesOfState.get(state).clone();
+            for (int symbol = 0; symbol < edges.length; symbol++) {
+                if (edges[symbol] >= 0) {
+                    edges[symbol] = newIndexOf[edges[symbol]];
+                }
+            }
+            gotoEdges.add(edges);
+
+            for (int i = 0; i < items.length; i++) {
+                if (afterDotOfItem[items[i]] < 0) {
+                    lookaheads.put(key(index, items[i]), closureLookaheads.get(state).get(i));
+                }
+            }
+        }
+    }
+
+    private static long key(int state, int item) {
+        return ((long) state << 32) | item;
+    }
+
+    private static final BitSet EMPTY = new BitSet();
+
+    private final int nonTerminalCount;
+    private final int terminalCount;
+    private final int eof;
+    private final int itemWidth;
+    private final int[] afterDotOfItem;
+    private final int[][] initialItemsOf;
+
+    // 以项目为下标, 点后面 (含点后的符号) 的符号串的 FIRST 集合以及它是否可空
+    private BitSet[] firstOfSuffix;
+    private boolean[] nullableSuffix;
+
+    // 求闭包时项目在闭包中的位置, 以 stamp 区分不同次的调用, 免去每次清空
+    private final int[] positionOf;
+    private final int[] stampOf;
+    private int stamp = 0;
+
+    // 构造过程中的状态, 以构造时的编号为下标
+    private final KernelTable coreTable = new KernelTable();
+    // 以核的编号为下标, 拥有该核的所有状态
+    private final List<List<Integer>> statesOfCore = new ArrayList<>();
+    private final List<int[]> kernels = new ArrayList<>();
+    private final List<BitSet[]> kernelLookaheads = new ArrayList<>();
+    private final List<int[]> closures = new ArrayList<>();
+    private final List<List<BitSet>> closureLookaheads = new ArrayList<>();
+    private final List<int[]> edgesOfState = new ArrayList<>();
+    private final ArrayDeque<Integer> worklist = new ArrayDeque<>();
+    private final BitSet inWorklist = new BitSet();
+
+    // 重新编号后的结果
+    private final List<int[]> itemsOfState = new ArrayList<>();
+    private final List<int[]> gotoEdges = new ArrayList<>();
+    private final Map<Long, BitSet> lookaheads = new HashMap<>();
+}
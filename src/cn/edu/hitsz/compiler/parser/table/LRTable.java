@@ -4,6 +4,8 @@ import cn.edu.hitsz.compiler.lexer.Token;
 import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -76,6 +78,67 @@ public class LRTable {
         }
     }
 
+    /**
+     * 从以整数编码的数组还原分析表, 表项的编码与 {@link ParsingTable} 相同, 规约的产生式编号即其在语法文件中的行号
+     *
+     * @param terminalCodes    各终结符的码点, 按 ACTION 表的列的顺序
+     * @param nonTerminalNames 各非终结符的名字, 按 GOTO 表的列的顺序
+     * @param statusIndices    各状态的编号, 按行的顺序
+     * @param actions          逐行展平的 ACTION 表
+     * @param gotos            逐行展平的 GOTO 表
+     * @return 还原出的分析表
+     */
+    public static LRTable fromArrays(int[] terminalCodes, String[] nonTerminalNames, int[] statusIndices, int[] actions, int[] gotos) {
+        final var terminals = Arrays.stream(terminalCodes).mapToObj(TokenKind::fromCode).toList();
+        final var nonTerminals = Arrays.stream(nonTerminalNames).map(GrammarInfo::getNonTerminal).toList();
+
+        // 先构造出所有状态, 移入动作与 GOTO 才能引用到它们
+        final var statusInIndexOrder = new ArrayList<Status>(statusIndices.length);
+        final var statuses = new Status[Arrays.stream(statusIndices).max().orElse(-1) + 1];
+        for (final var index : statusIndices) {
+            final var status = Status.create(index);
+            statusInIndexOrder.add(status);
+            statuses[index] = status;
+        }
+
+        final var productions = GrammarInfo.getProductionsInOrder();
+        for (int row = 0; row < statusIndices.length; row++) {
+            final var status = statusInIndexOrder.get(row);
+            for (int column = 0; column < terminals.size(); column++) {
+                final var action = actions[row * terminals.size() + column];
+                final var target = ParsingTable.targetOf(action);
+                switch (ParsingTable.kindOf(action)) {
+                    case ParsingTable.SHIFT -> status.setAction(terminals.get(column), Action.shift(statuses[target]));
+                    case ParsingTable.REDUCE -> status.setAction(terminals.get(column), Action.reduce(productions.get(target - 1)));
+                    case ParsingTable.ACCEPT -> status.setAction(terminals.get(column), Action.accept());
+                    default -> {
+                    }
+                }
+            }
+
+            for (int column = 0; column < nonTerminals.size(); column++) {
+                final var target = gotos[row * nonTerminals.size() + column];
+                if (target != ParsingTable.NO_GOTO) {
+                    status.setGoto(nonTerminals.get(column), statuses[target]);
+                }
+            }
+        }
+
+        return new LRTable(statusInIndexOrder, terminals, nonTerminals);
+    }
+
+    List<Status> getStatusInIndexOrder() {
+        return statusInIndexOrder;
+    }
+
+    List<TokenKind> getTerminals() {
+        return terminals;
+    }
+
+    List<NonTerminal> getNonTerminals() {
+        return nonTerminals;
+    }
+
     LRTable(List<Status> statusInIndexOrder, List<TokenKind> terminals, List<NonTerminal> nonTerminals) {
         this.statusInIndexOrder = statusInIndexOrder;
         this.terminals = terminals;
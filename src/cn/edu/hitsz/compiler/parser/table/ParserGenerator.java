@@ -0,0 +1,245 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * 由 LR 分析表生成专用的语法分析器的 Java 源代码
+ * <br>
+ * 生成的分析器继承自 {@link cn.edu.hitsz.compiler.parser.SyntaxAnalyzer}, 以相同的方式加载词法单元与注册观察者.
+ * 其中的 ACTION/GOTO 表都是 static final 的 int 数组, 规约动作则通过对产生式编号的 switch 分派, 每个分支里产生式体的长度
+ * 与产生式头的列号都是常量. 这样分析器的主循环很小, 且不含任何虚调用或哈希查找, 便于 JIT 优化.
+ * <br>
+ * 生成的代码中记录了语法文件与码点文件的摘要, 若二者在生成之后有改动, 构造分析器时会直接报错, 提醒重新生成.
+ * <br>
+ * 用法: 在项目根目录下运行该类的 main 方法, 参数为输出的源文件路径 (默认为 {@link #DEFAULT_OUTPUT_PATH}).
+ */
+public final class ParserGenerator {
+    public static final String DEFAULT_OUTPUT_PATH = "src/cn/edu/hitsz/compiler/parser/GeneratedParser.java";
+
+    public static void main(String[] args) {
+        TokenKind.loadTokenKinds();
+        final var table = TableCache.loadOrGenerate(FilePathConfig.LR_TABLE_CACHE_PATH);
+        final var path = args.length > 0 ? args[0] : DEFAULT_OUTPUT_PATH;
+        FileUtils.writeFile(path, generate(table, "cn.edu.hitsz.compiler.parser", "GeneratedParser"));
+        System.out.println("Parser generated: " + path);
+    }
+
+    /**
+     * 生成专用分析器的源代码
+     *
+     * @param table       分析表, 其状态编号必须恰为 0 到状态数 - 1
+     * @param packageName 生成的类所在的包
+     * @param className   生成的类名
+     * @return 源代码
+     */
+    public static String generate(LRTable table, String packageName, String className) {
+        final var statusList = table.getStatusInIndexOrder();
+        for (int i = 0; i < statusList.size(); i++) {
+            if (statusList.get(i).index() != i) {
+                throw new RuntimeException("Status indices must be 0 to %d in order".formatted(statusList.size() - 1));
+            }
+        }
+
+        final var compiled = CompiledLRTable.compile(table);
+        final var terminals = table.getTerminals();
+        final var nonTerminals = table.getNonTerminals();
+        final var stateCount = statusList.size();
+
+        final var actions = new int[stateCount * terminals.size()];
+        final var gotos = new int[stateCount * nonTerminals.size()];
+        for (int state = 0; state < stateCount; state++) {
+            for (int column = 0; column < terminals.size(); column++) {
+                actions[state * terminals.size() + column] = compiled.getAction(state, column);
+            }
+            for (int column = 0; column < nonTerminals.size(); column++) {
+                gotos[state * nonTerminals.size() + column] = compiled.getGoto(state, column);
+            }
+        }
+
+        final var terminalCodes = terminals.stream().mapToInt(TokenKind::getCode).toArray();
+        final var columnOfCode = new int[Arrays.stream(terminalCodes).max().orElse(-1) + 2];
+        Arrays.fill(columnOfCode, -1);
+        for (int column = 0; column < terminalCodes.length; column++) {
+            columnOfCode[terminalCodes[column] + 1] = column;
+        }
+
+        // 只为表中实际出现的产生式生成分支
+        final var reduceCases = new StringBuilder();
+        for (final var production : GrammarInfo.getProductionsInOrder()) {
+            if (!Arrays.stream(actions).anyMatch(action -> action == ParsingTable.encode(ParsingTable.REDUCE, production.index()))) {
+                continue;
+            }
+            final var indent = " ".repeat(24);
+            reduceCases.append(indent).append("case %d -> { // %s\n".formatted(production.index(), production))
+                .append(indent).append("    top -= %d;\n".formatted(production.body().size()))
+                .append(indent).append("    exposed = statusStack[top];\n")
+                .append(indent).append("    goto_ = GOTO[exposed * NON_TERMINAL_COUNT + %d];\n".formatted(nonTerminals.indexOf(production.head())))
+                .append(indent).append("}\n");
+        }
+
+        final var nonTerminalNames = nonTerminals.stream()
+            .map(nonTerminal -> '"' + nonTerminal.getTermName() + '"')
+            .collect(Collectors.joining(", "));
+
+        return """
+            package %1$s;
+
+            import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+            import cn.edu.hitsz.compiler.parser.table.LRTable;
+            import cn.edu.hitsz.compiler.parser.table.ParsingTable;
+            import cn.edu.hitsz.compiler.parser.table.TableCache;
+            import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+            import java.util.Arrays;
+            import java.util.stream.IntStream;
+
+            /**
+             * 由 {@link cn.edu.hitsz.compiler.parser.table.ParserGenerator} 根据语法文件生成的专用 LR 语法分析器, 请勿手动修改
+             * <br>
+             * 用法与 {@link SyntaxAnalyzer} 相同, 但不需要加载分析表. 编译器的各个入口默认仍使用 {@link SyntaxAnalyzer}, 需要时自行替换.
+             */
+            public final class %2$s extends SyntaxAnalyzer {
+                /**
+                 * 生成时语法文件与码点文件的摘要
+                 */
+                public static final String GRAMMAR_DIGEST = "%3$s";
+
+                public %2$s(SymbolTable symbolTable) {
+                    super(symbolTable);
+                    verify();
+                }
+
+                /**
+                 * 检查语法文件与码点文件自生成以来有没有被改动. 摘要只在第一次检查通过前计算, 之后构造分析器时不再读取文件
+                 *
+                 * @throws RuntimeException 语法已经改动, 需要重新运行 ParserGenerator
+                 */
+                public static void verify() {
+                    if (verified) {
+                        return;
+                    }
+                    if (!GRAMMAR_DIGEST.equals(TableCache.grammarDigest())) {
+                        throw new RuntimeException("Grammar has changed since %2$s was generated, please run ParserGenerator again");
+                    }
+                    verified = true;
+                }
+
+                @Override
+                public void run() {
+                    final var tokens = getTokenStream();
+                    int[] statusStack = new int[64];
+                    int top = 0;
+                    statusStack[top] = %4$d;
+
+                    while (true) {
+                        final var currentStatus = statusStack[top];
+                        final var currentToken = tokens.peek();
+                        final var code = currentToken.getKind().getCode() + 1;
+                        final var column = code >= 0 && code < COLUMN_OF_CODE.length ? COLUMN_OF_CODE[code] : -1;
+                        final var action = column < 0 ? ParsingTable.ERROR : ACTION[currentStatus * TERMINAL_COUNT + column];
+
+                        switch (action & ParsingTable.KIND_MASK) {
+                            case ParsingTable.SHIFT -> {
+                                callWhenInShift(TABLE.getStatus(currentStatus), currentToken);
+                                if (++top == statusStack.length) {
+                                    statusStack = Arrays.copyOf(statusStack, statusStack.length * 2);
+                                }
+                                statusStack[top] = action >>> ParsingTable.KIND_BITS;
+                                tokens.next();
+                            }
+
+                            case ParsingTable.REDUCE -> {
+                                final var production = action >>> ParsingTable.KIND_BITS;
+                                final int exposed;
+                                final int goto_;
+                                switch (production) {
+            %5$s
+                                    default -> throw new RuntimeException("Unknown production: " + production);
+                                }
+                                if (goto_ == ParsingTable.NO_GOTO) {
+                                    throw new RuntimeException("No goto from status %%d on %%s".formatted(
+                                        exposed, TABLE.getProduction(production).head()));
+                                }
+                                if (++top == statusStack.length) {
+                                    statusStack = Arrays.copyOf(statusStack, statusStack.length * 2);
+                                }
+                                statusStack[top] = goto_;
+                                callWhenInReduce(TABLE.getStatus(exposed), TABLE.getProduction(production));
+                            }
+
+                            case ParsingTable.ACCEPT -> {
+                                callWhenInAccept(TABLE.getStatus(currentStatus));
+                                return;
+                            }
+
+                            default -> throw new RuntimeException("Unexpected token %%s at status %%d".formatted(currentToken, currentStatus));
+                        }
+                    }
+                }
+
+                private static final int TERMINAL_COUNT = %6$d;
+                private static final int NON_TERMINAL_COUNT = %7$d;
+
+                // 以码点 + 1 为下标的终结符列号
+                private static final int[] COLUMN_OF_CODE = {%8$s};
+                private static final int[] TERMINAL_CODES = {%9$s};
+                private static final String[] NON_TERMINAL_NAMES = {%10$s};
+
+                private static final int[] ACTION = {
+            %11$s
+                };
+
+                private static final int[] GOTO = {
+            %12$s
+                };
+
+                // 语法文件的摘要是否已经检查通过, 并发的首次检查至多重复计算摘要, 不影响结果
+                private static volatile boolean verified = false;
+
+                // 由上面的数组还原出的分析表, 只用于向观察者传递 Status 与 Production 对象
+                private static final CompiledLRTable TABLE = CompiledLRTable.compile(LRTable.fromArrays(
+                    TERMINAL_CODES, NON_TERMINAL_NAMES, IntStream.range(0, %13$d).toArray(), ACTION, GOTO
+                ));
+            }
+            """.formatted(
+            packageName,
+            className,
+            TableCache.grammarDigest(),
+            compiled.getInit(),
+            reduceCases.toString().stripTrailing(),
+            terminals.size(),
+            nonTerminals.size(),
+            join(columnOfCode),
+            join(terminalCodes),
+            nonTerminalNames,
+            rows(actions, terminals.size()),
+            rows(gotos, nonTerminals.size()),
+            stateCount
+        );
+    }
+
+    private static String join(int[] values) {
+        return Arrays.stream(values).mapToObj(Integer::toString).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * 每个状态一行
+     */
+    private static String rows(int[] values, int width) {
+        final var lines = new StringBuilder();
+        for (int begin = 0; begin < values.length; begin += width) {
+            lines.append("        ")
+                .append(join(Arrays.copyOfRange(values, begin, begin + width)))
+                .append(",\n");
+        }
+        return lines.toString().stripTrailing();
+    }
+
+    private ParserGenerator() {
+    }
+}
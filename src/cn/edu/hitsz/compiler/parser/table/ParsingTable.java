@@ -0,0 +1,104 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+/**
+ * 以整数编码的 LR 分析表, 供语法分析驱动程序直接查表使用
+ * <br>
+ * 状态, 终结符, 非终结符与产生式都以整数编号表示. ACTION 表中的每一项的低 {@link #KIND_BITS} 位为动作类型
+ * ({@link #ERROR}, {@link #SHIFT}, {@link #REDUCE}, {@link #ACCEPT}), 其余高位为移入的目标状态编号或规约的产生式编号.
+ * GOTO 表中没有转移的项为 {@link #NO_GOTO}.
+ *
+ * @see CompiledLRTable 展平为稠密数组的分析表
+ * @see CompressedLRTable 以行偏移压缩的分析表
+ */
+public interface ParsingTable {
+    int KIND_BITS = 2;
+    int KIND_MASK = (1 << KIND_BITS) - 1;
+
+    int ERROR = 0;
+    int SHIFT = 1;
+    int REDUCE = 2;
+    int ACCEPT = 3;
+
+    int NO_GOTO = -1;
+
+    /**
+     * @param action ACTION 表中的项
+     * @return 动作类型
+     */
+    static int kindOf(int action) {
+        return action & KIND_MASK;
+    }
+
+    /**
+     * @param action ACTION 表中的项
+     * @return 移入的目标状态编号, 或规约的产生式编号
+     */
+    static int targetOf(int action) {
+        return action >>> KIND_BITS;
+    }
+
+    /**
+     * @param kind   动作类型
+     * @param target 移入的目标状态编号, 或规约的产生式编号
+     * @return ACTION 表中的项
+     */
+    static int encode(int kind, int target) {
+        return (target << KIND_BITS) | kind;
+    }
+
+    /**
+     * @return 起始状态的编号
+     */
+    int getInit();
+
+    /**
+     * @param kind 终结符 (Token 类型)
+     * @return 该终结符在 ACTION 表中的列号, 不在表中时为 -1
+     */
+    int getTerminalColumn(TokenKind kind);
+
+    /**
+     * @param state          状态编号
+     * @param terminalColumn 终结符的列号
+     * @return ACTION 表中的项, 列号为 -1 时为 {@link #ERROR}
+     */
+    int getAction(int state, int terminalColumn);
+
+    /**
+     * @param state             状态编号
+     * @param nonTerminalColumn 非终结符的列号
+     * @return 应转移到的状态编号, 没有转移时为 {@link #NO_GOTO}
+     */
+    int getGoto(int state, int nonTerminalColumn);
+
+    /**
+     * @param production 产生式编号
+     * @return 产生式头在 GOTO 表中的列号
+     */
+    int getHeadColumn(int production);
+
+    /**
+     * @param production 产生式编号
+     * @return 产生式体的长度, 即规约时要弹出的状态数
+     */
+    int getBodyLength(int production);
+
+    /**
+     * @param state 状态编号
+     * @return 该编号的状态, 用于通知观察者
+     */
+    Status getStatus(int state);
+
+    /**
+     * @param production 产生式编号
+     * @return 该编号的产生式, 用于通知观察者
+     */
+    Production getProduction(int production);
+
+    /**
+     * @return 状态个数
+     */
+    int getStateCount();
+}
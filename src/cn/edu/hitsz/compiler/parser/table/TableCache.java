@@ -0,0 +1,258 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * LR 分析表的二进制缓存
+ * <br>
+ * 从语法文件构造分析表 (FIRST/FOLLOW, LR(0) 规范集族, 填表) 是启动时开销最大的一步, 而语法文件几乎从不改变.
+ * 该类把构造出的分析表以紧凑的二进制格式保存下来, 并在其中记下语法文件与码点文件内容的 SHA-256 摘要.
+ * 下次启动时直接映射缓存文件并还原出分析表, 只有当摘要对不上 (文法或码点有改动) 或构造方法不同时才重新构造.
+ * <br>
+ * 缓存文件的格式 (整数均为大端序的 int):
+ * <pre>
+ * 魔数 版本号 构造方法 ({@link TableGenerator.Mode} 的序号)
+ * 摘要长度 摘要
+ * 终结符个数 各终结符的码点
+ * 非终结符个数 (名字的字节数 名字的 UTF-8 字节)...
+ * 状态个数 各状态的编号
+ * 各状态的 ACTION 行与 GOTO 行
+ * </pre>
+ * ACTION 表项的编码与 {@link ParsingTable} 相同, 规约的产生式编号即其在语法文件中的行号; GOTO 表项为目标状态编号或 {@link ParsingTable#NO_GOTO}.
+ * 终结符与非终结符按原表中的列的顺序保存, 因此还原出的表输出的 CSV 与原表完全相同.
+ */
+public final class TableCache {
+    /**
+     * 读取缓存的分析表, 若缓存不存在或已过期则从语法文件构造分析表并写入缓存. 必要时先读取码点文件
+     *
+     * @param path 缓存文件路径
+     * @return 分析表
+     */
+    public static LRTable loadOrGenerate(String path) {
+        return loadOrGenerate(path, TableGenerator.Mode.SLR);
+    }
+
+    /**
+     * 读取缓存的分析表, 若缓存不存在, 已过期或以其他方法构造, 则以给定的方法从语法文件构造分析表并写入缓存
+     *
+     * @param path 缓存文件路径
+     * @param mode 分析表的构造方法
+     * @return 分析表
+     */
+    public static LRTable loadOrGenerate(String path, TableGenerator.Mode mode) {
+        final var digest = digestOfGrammar();
+        return load(path, mode, digest).orElseGet(() -> {
+            final var tableGenerator = new TableGenerator(mode);
+            tableGenerator.run();
+            final var table = tableGenerator.getTable();
+            save(table, path, mode, digest);
+            return table;
+        });
+    }
+
+    /**
+     * 读取缓存的分析表
+     *
+     * @param path 缓存文件路径
+     * @return 分析表, 若缓存不存在, 已损坏或与当前的语法文件和码点文件不符则为空
+     */
+    public static Optional<LRTable> load(String path) {
+        return load(path, TableGenerator.Mode.SLR);
+    }
+
+    /**
+     * 读取缓存的分析表
+     *
+     * @param path 缓存文件路径
+     * @param mode 分析表的构造方法
+     * @return 分析表, 若缓存不存在, 已损坏, 与当前的语法文件和码点文件不符或以其他方法构造则为空
+     */
+    public static Optional<LRTable> load(String path, TableGenerator.Mode mode) {
+        return load(path, mode, digestOfGrammar());
+    }
+
+    /**
+     * 把分析表写入缓存
+     *
+     * @param table 分析表
+     * @param path  缓存文件路径
+     */
+    public static void save(LRTable table, String path) {
+        save(table, path, TableGenerator.Mode.SLR);
+    }
+
+    /**
+     * 把分析表写入缓存
+     *
+     * @param table 分析表
+     * @param path  缓存文件路径
+     * @param mode  分析表的构造方法
+     */
+    public static void save(LRTable table, String path, TableGenerator.Mode mode) {
+        save(table, path, mode, digestOfGrammar());
+    }
+
+    private static Optional<LRTable> load(String path, TableGenerator.Mode mode, byte[] digest) {
+        // 还原分析表与构造分析表都要以码点查找词法单元的种类
+        TokenKind.loadTokenKinds();
+        if (!Files.isRegularFile(Paths.get(path))) {
+            return Optional.empty();
+        }
+
+        final var buffer = FileUtils.mapFile(path);
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != mode.ordinal()) {
+                return Optional.empty();
+            }
+            final var storedDigest = new byte[buffer.getInt()];
+            buffer.get(storedDigest);
+            if (!Arrays.equals(storedDigest, digest)) {
+                return Optional.empty();
+            }
+
+            return Optional.of(read(buffer));
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            // 缓存文件已损坏, 当作没有缓存处理
+            return Optional.empty();
+        }
+    }
+
+    private static LRTable read(ByteBuffer buffer) {
+        final var terminalCodes = readInts(buffer, buffer.getInt());
+
+        final var nonTerminalNames = new String[buffer.getInt()];
+        for (int i = 0; i < nonTerminalNames.length; i++) {
+            final var name = new byte[buffer.getInt()];
+            buffer.get(name);
+            nonTerminalNames[i] = new String(name, StandardCharsets.UTF_8);
+        }
+
+        final var statusIndices = readInts(buffer, buffer.getInt());
+        final var actions = new int[statusIndices.length * terminalCodes.length];
+        final var gotos = new int[statusIndices.length * nonTerminalNames.length];
+        for (int row = 0; row < statusIndices.length; row++) {
+            buffer.asIntBuffer().get(actions, row * terminalCodes.length, terminalCodes.length);
+            buffer.position(buffer.position() + terminalCodes.length * Integer.BYTES);
+            buffer.asIntBuffer().get(gotos, row * nonTerminalNames.length, nonTerminalNames.length);
+            buffer.position(buffer.position() + nonTerminalNames.length * Integer.BYTES);
+        }
+
+        return LRTable.fromArrays(terminalCodes, nonTerminalNames, statusIndices, actions, gotos);
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        final var ints = new int[count];
+        buffer.asIntBuffer().get(ints);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return ints;
+    }
+
+    private static void save(LRTable table, String path, TableGenerator.Mode mode, byte[] digest) {
+        final var compiled = CompiledLRTable.compile(table);
+        final var terminals = table.getTerminals();
+        final var nonTerminals = table.getNonTerminals();
+
+        // 先写到临时文件再改名, 这样并发启动的进程不会读到写了一半的缓存
+        final var target = Paths.get(path);
+        try {
+            final var temp = Files.createTempFile(target.toAbsolutePath().getParent(), "lr_table", ".tmp");
+            try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(mode.ordinal());
+                out.writeInt(digest.length);
+                out.write(digest);
+
+                out.writeInt(terminals.size());
+                for (final var terminal : terminals) {
+                    out.writeInt(terminal.getCode());
+                }
+
+                out.writeInt(nonTerminals.size());
+                for (final var nonTerminal : nonTerminals) {
+                    final var name = nonTerminal.getTermName().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(name.length);
+                    out.write(name);
+                }
+
+                final var statusInIndexOrder = table.getStatusInIndexOrder();
+                out.writeInt(statusInIndexOrder.size());
+                for (final var status : statusInIndexOrder) {
+                    out.writeInt(status.index());
+                }
+                for (final var status : statusInIndexOrder) {
+                    for (int column = 0; column < terminals.size(); column++) {
+                        out.writeInt(compiled.getAction(status.index(), column));
+                    }
+                    for (int column = 0; column < nonTerminals.size(); column++) {
+                        out.writeInt(compiled.getGoto(status.index(), column));
+                    }
+                }
+            }
+            moveReplacing(temp, target);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+    }
+
+    private static void moveReplacing(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return 语法文件与码点文件内容的摘要的十六进制表示, 用于判断由分析表生成的代码是否过期
+     */
+    public static String grammarDigest() {
+        return HexFormat.of().formatHex(digestOfGrammar());
+    }
+
+    /**
+     * @return 语法文件与码点文件内容的摘要
+     */
+    private static byte[] digestOfGrammar() {
+        try {
+            final var sha = MessageDigest.getInstance("SHA-256");
+            for (final var path : new String[]{FilePathConfig.GRAMMAR_PATH, FilePathConfig.CODING_MAP_PATH}) {
+                final var content = Files.readAllBytes(Paths.get(path));
+                // 先写入长度, 避免两个文件的内容拼接后产生歧义
+                sha.update(ByteBuffer.allocate(Integer.BYTES).putInt(content.length).array());
+                sha.update(content);
+            }
+            return sha.digest();
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on reading grammar", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private TableCache() {
+    }
+
+    // "LRTB"
+    private static final int MAGIC = 0x4C525442;
+    // 表的格式或构造算法改变时递增, 使旧的缓存失效
+    private static final int VERSION = 3;
+}
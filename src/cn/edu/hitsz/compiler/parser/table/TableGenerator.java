@@ -4,16 +4,71 @@ import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
 
 /**
  * 根据语法文件构造 LR 分析表.
  * <br>
  * 此文件为非必需的框架文件, 用于提升整个编译器处理流程的统一性以及为学生提供 SLR(1) 分析表生成程序的参考. 正常情况下你不需要了解该文件.
+ * <br>
+ * 除 SLR(1) 外还可以构造 LALR(1) 分析表, 二者基于同一个 LR(0) 自动机, 状态数相同, 只是规约动作的向前看符号不同;
+ * 以及以 Pager 弱相容合并构造的 LR(1) 分析表, 它能处理需要完整 LR(1) 能力的文法, 状态数又接近 LALR(1).
+ *
+ * @see Mode
  */
 public class TableGenerator {
+    /**
+     * 分析表的构造方法
+     */
+    public enum Mode {
+        /**
+         * 以产生式头的 FOLLOW 集合作为规约的向前看符号
+         */
+        SLR,
+        /**
+         * 以 DeRemer-Pennello 算法为每个状态中的每个规约项目分别计算向前看符号
+         *
+         * @see LALRLookaheads
+         */
+        LALR,
+        /**
+         * 构造 LR(1) 项目集族, 并以 Pager 的弱相容条件合并同核的状态
+         *
+         * @see LR1Collection
+         */
+        LR1,
+    }
+
+    /**
+     * 以各种方法为当前的语法文件构造分析表, 打印各自的状态数与耗时, 或者遇到的冲突
+     */
+    public static void main(String[] args) {
+        TokenKind.loadTokenKinds();
+        for (final var mode : Mode.values()) {
+            final var begin = System.nanoTime();
+            try {
+                final var generator = new TableGenerator(mode);
+                generator.run();
+                final var elapsed = (System.nanoTime() - begin) / 1e6;
+                System.out.printf("%-4s %6d states %10.2f ms%n", mode, generator.getStateCount(), elapsed);
+            } catch (RuntimeException e) {
+                System.out.printf("%-4s failed: %s%n", mode, e.getMessage());
+            }
+        }
+    }
+
     public TableGenerator() {
+        this(Mode.SLR);
+    }
+
+    /**
+     * @param mode 分析表的构造方法
+     */
+    public TableGenerator(Mode mode) {
+        this.mode = mode;
         this.productions = GrammarInfo.getProductionsInOrder();
         this.terminals = new HashSet<>(TokenKind.allAllowedTokenKinds().values());
         this.nonTerminals = new HashSet<>(GrammarInfo.getNonTerminals().values());
@@ -27,9 +82,37 @@ public class TableGenerator {
      * 主体方法
      */
     public void run() {
+        numberTerms();
         calcFirst();
         calcFollow();
-        constructDFA();
+        constructDFA(null);
+        calcLookaheads();
+        dumpItems();
+        genTable();
+    }
+
+    /**
+     * 以并行方式构造 LR(0) 规范项目集族, 结果与 run 完全相同
+     *
+     * @see #runParallel(ForkJoinPool)
+     */
+    public void runParallel() {
+        runParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 以并行方式构造 LR(0) 规范项目集族, 结果与 run 完全相同
+     * <br>
+     * LR(1) 模式下状态之间会反复合并与传播, 仍然串行构造
+     *
+     * @param pool 执行构造的线程池
+     */
+    public void runParallel(ForkJoinPool pool) {
+        numberTerms();
+        calcFirst();
+        calcFollow();
+        constructDFA(pool);
+        calcLookaheads();
         dumpItems();
         genTable();
     }
@@ -41,14 +124,21 @@ public class TableGenerator {
         final var lines = new ArrayList<String>();
         for (final var status : allStatusInIndexOrder) {
             lines.add("%d: ".formatted(status.index()));
-            for (final var item : including.get(status)) {
-                lines.add("    " + item);
+            for (final var item : itemsOfState.get(status.index())) {
+                lines.add("    " + itemToString(item));
             }
         }
 
         FileUtils.writeLines("data/out/items.txt", lines);
     }
 
+    /**
+     * @return 构造出的状态数
+     */
+    public int getStateCount() {
+        return allStatusInIndexOrder.size();
+    }
+
     /**
      * @return 构造出的 LR 表
      */
@@ -56,306 +146,525 @@ public class TableGenerator {
         return new LRTable(allStatusInIndexOrder, new ArrayList<>(terminals), new ArrayList<>(nonTerminals));
     }
 
+    private final Mode mode;
     private final List<Production> productions;
     private final Set<TokenKind> terminals;
     private final Set<NonTerminal> nonTerminals;
 
-    private final Map<Term, Set<TokenKind>> first = new HashMap<>();
-    private final Map<Term, Set<TokenKind>> follow = new HashMap<>();
+    // 终结符与非终结符的序号, FIRST/FOLLOW 集合都是以终结符序号为下标的位集
+    private final List<TokenKind> terminalList = new ArrayList<>();
+    private final Map<TokenKind, Integer> terminalOrdinal = new HashMap<>();
+    private final List<NonTerminal> nonTerminalList = new ArrayList<>();
+    private final Map<NonTerminal, Integer> nonTerminalOrdinal = new HashMap<>();
 
-    private final Set<Term> visited = new HashSet<>();
+    // 以非终结符序号为下标
+    private boolean[] nullable;
+    private BitSet[] first;
+    private BitSet[] follow;
 
     /**
-     * 计算所有符号的 first 集合 <br>
-     * 终结符的 first 就是它自身, 非终结符的 first 则递归计算
+     * 为终结符与非终结符编号
      */
-    private void calcFirst() {
+    private void numberTerms() {
         for (final var terminal : terminals) {
-            first.put(terminal, Set.of(terminal));
+            terminalOrdinal.put(terminal, terminalList.size());
+            terminalList.add(terminal);
         }
-
         for (final var nonTerminal : nonTerminals) {
-            visited.clear();
-            calcFirst(nonTerminal);
+            nonTerminalOrdinal.put(nonTerminal, nonTerminalList.size());
+            nonTerminalList.add(nonTerminal);
         }
-
     }
 
     /**
-     * 递归计算特定非终结符的 first
-     *
-     * @param nonTerminal 非终结符
-     * @return 其 first 集合
+     * 以不动点迭代计算所有非终结符是否可空以及它们的 first 集合
+     * <br>
+     * 对产生式 A -> X1 X2 ... Xn, first(A) 包含 first(X1), 若 X1 可空则还包含 first(X2), 以此类推; 若 X1 到 Xn 均可空, 则 A 可空.
+     * 用一个产生式的工作表来迭代: 每当某个非终结符的 first 集合或可空性变化时, 只需重新检查体中含有它的产生式.
      */
-    private Set<TokenKind> calcFirst(Term nonTerminal) {
-        // 如果已经被计算, 则直接返回缓存的结果
-        if (first.containsKey(nonTerminal)) {
-            return first.get(nonTerminal);
-        }
+    private void calcFirst() {
+        nullable = new boolean[nonTerminalList.size()];
+        first = new BitSet[nonTerminalList.size()];
+        Arrays.setAll(first, i -> new BitSet(terminalList.size()));
 
-        final var result = new LinkedHashSet<TokenKind>();
+        // 以非终结符序号为下标, 体中含有该非终结符的产生式
+        final var usedIn = new ArrayList<List<Production>>();
+        nonTerminalList.forEach(nonTerminal -> usedIn.add(new ArrayList<>()));
         for (final var production : productions) {
-            if (nonTerminal == production.head()) {
-                // 在文法中寻找以该非终结符为头的产生式
-                final var firstSymbol = production.body().get(0);
-                // 记录已经在栈中的递归过的非终结符, 防止直接或间接的左递归导致程序死循环
-                if (!visited.contains(firstSymbol)) {
-                    // 随后递归查找该产生式体的第一个文法符号的 first 集合
-                    // 它的 first 集合也是该非终结符的 first 集合
-                    visited.add(firstSymbol);
-                    result.addAll(calcFirst(firstSymbol));
+            production.body().stream()
+                .filter(NonTerminal.class::isInstance).distinct()
+                .forEach(symbol -> usedIn.get(nonTerminalOrdinal.get((NonTerminal) symbol)).add(production));
+        }
+
+        final var worklist = new ArrayDeque<>(productions);
+        final var inWorklist = new HashSet<>(productions);
+        while (!worklist.isEmpty()) {
+            final var production = worklist.pollFirst();
+            inWorklist.remove(production);
+
+            final var head = nonTerminalOrdinal.get(production.head());
+            final var before = first[head].cardinality();
+            final var wasNullable = nullable[head];
+
+            if (firstOfSequence(production.body(), 0, first[head])) {
+                nullable[head] = true;
+            }
+
+            if (first[head].cardinality() != before || nullable[head] != wasNullable) {
+                for (final var user : usedIn.get(head)) {
+                    if (inWorklist.add(user)) {
+                        worklist.addLast(user);
+                    }
                 }
             }
         }
-
-        first.put(nonTerminal, result);
-        return result;
     }
 
-
     /**
-     * 计算所有非终结符的 follow 集合
+     * 把符号串 body[from..] 的 first 集合并入 result
+     *
+     * @return 该符号串是否可空
      */
-    private void calcFollow() {
-        for (final var nonTerminal : nonTerminals) {
-            visited.clear();
-            calcFollow(nonTerminal);
-        }
+    private boolean firstOfSequence(List<Term> body, int from, BitSet result) {
+        for (int i = from; i < body.size(); i++) {
+            final var symbol = body.get(i);
+            if (symbol instanceof TokenKind terminal) {
+                result.set(terminalOrdinal.get(terminal));
+                return false;
+            }
 
-        // 对于找完所有产生式了都还没没有 follow 的非终结符
-        // 它必然是一个没有被使用的非终结符, 这意味着它的 follow 就是 EOF
-        nonTerminals.stream()
-            .map(follow::get).filter(Set::isEmpty)
-            .forEach(set -> set.add(TokenKind.eof()));
+            final var ordinal = nonTerminalOrdinal.get((NonTerminal) symbol);
+            result.or(first[ordinal]);
+            if (!nullable[ordinal]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * 递归计算给定非终结符的 follow 集合
-     *
-     * @param nonTerminal 给定的非终止符
-     * @return 其 follow 集合
+     * 以不动点迭代计算所有非终结符的 follow 集合
+     * <br>
+     * 对产生式 A -> alpha B beta, follow(B) 包含 first(beta), 若 beta 可空则还包含 follow(A).
+     * 前一部分与其它非终结符的 follow 无关, 先一次算出; 后一部分构成 "follow(A) 流向 follow(B)" 的边, 沿边用工作表传播即可.
      */
-    private Set<TokenKind> calcFollow(NonTerminal nonTerminal) {
-        // 与 first 类似, 先查找缓存
-        if (follow.containsKey(nonTerminal)) {
-            return follow.get(nonTerminal);
-        }
+    private void calcFollow() {
+        follow = new BitSet[nonTerminalList.size()];
+        Arrays.setAll(follow, i -> new BitSet(terminalList.size()));
 
-        final var result = new LinkedHashSet<TokenKind>();
+        // 开始符号后面跟着 EOF
+        follow[nonTerminalOrdinal.get(productions.get(0).head())].set(terminalOrdinal.get(TokenKind.eof()));
+
+        // 以非终结符序号为下标, 其 follow 集合要流向哪些非终结符的 follow 集合
+        final var flowsTo = new ArrayList<Set<Integer>>();
+        nonTerminalList.forEach(nonTerminal -> flowsTo.add(new LinkedHashSet<>()));
         for (final var production : productions) {
             final var body = production.body();
-
-            // 对该非终结符在每条产生式体中的可能出现, 我们都要将紧跟在该出现后面的项的 first 加入其 follow 集合
-            // 我们直接枚举每条产生式体的每个项
-            for (int i = 0; i < body.size() - 1; i++) {
-                // 如果发现目前的 curr 的话, 后面跟着的符号的 first 就是它的 follow
-                final var symbol = body.get(i);
-                final var next = body.get(i + 1);
-
-                if (symbol.equals(nonTerminal)) {
-                    result.addAll(first.get(next));
+            final var head = nonTerminalOrdinal.get(production.head());
+            for (int i = 0; i < body.size(); i++) {
+                if (body.get(i) instanceof NonTerminal nonTerminal) {
+                    final var ordinal = nonTerminalOrdinal.get(nonTerminal);
+                    if (firstOfSequence(body, i + 1, follow[ordinal]) && ordinal != head) {
+                        flowsTo.get(head).add(ordinal);
+                    }
                 }
             }
+        }
 
-            // 如果该非终结符出现在产生式的末尾, 那么该产生式的头的 follow 集合也要加入其 follow 集合中
-            final var lastInBody = body.get(body.size() - 1);
-            if (lastInBody.equals(nonTerminal)) {
-                final var head = production.head();
-                if (visited.contains(head)) {
-                    // 如果该产生式头已经在栈中了, 那么意味着这个非终结符有可能一直展开自己
-                    // 这时候 EOF 也可能是它的 Follow
-                    result.add(TokenKind.eof());
-                } else {
-                    // 否则直接递归查找
-                    visited.add(head);
-                    result.addAll(calcFollow(head));
+        final var worklist = new ArrayDeque<Integer>();
+        final var inWorklist = new boolean[nonTerminalList.size()];
+        for (int i = 0; i < nonTerminalList.size(); i++) {
+            worklist.addLast(i);
+            inWorklist[i] = true;
+        }
+        while (!worklist.isEmpty()) {
+            final var from = worklist.pollFirst();
+            inWorklist[from] = false;
+            for (final var to : flowsTo.get(from)) {
+                final var before = follow[to].cardinality();
+                follow[to].or(follow[from]);
+                if (follow[to].cardinality() != before && !inWorklist[to]) {
+                    worklist.addLast(to);
+                    inWorklist[to] = true;
                 }
             }
         }
 
-        follow.put(nonTerminal, result);
-        return result;
+        // 对于找完所有产生式了都还没没有 follow 的非终结符
+        // 它必然是一个没有被使用的非终结符, 这意味着它的 follow 就是 EOF
+        for (final var set : follow) {
+            if (set.isEmpty()) {
+                set.set(terminalOrdinal.get(TokenKind.eof()));
+            }
+        }
     }
 
+    // 项目以整数编码: 产生式在 productions 中的下标 * itemWidth + 点的位置
+    // 对于 A -> B . C, 点的位置为 1 (其下一个项 C 的索引); 对于 A -> B C ., 点的位置为 2 (其产生式体的项数量)
+    private int itemWidth;
+    // 所有文法符号, 非终结符在前, 终结符在后, 其顺序决定了状态的编号
+    private final List<Term> symbols = new ArrayList<>();
+    // 以项目为下标, 点后面的文法符号在 symbols 中的下标, 点在末尾时为 -1
+    private int[] afterDotOfItem;
+    // 以非终结符序号为下标, 以其为头的产生式的点在开头的项目
+    private int[][] initialItemsOf;
+
     /**
-     * 表示一个项目
-     * <br>
-     * 对于 A -> B . C, 其 production 为 A -> B C, dot 为 1 (其下一个项 C 的索引) <br>
-     * 对于 A -> B C ., 其 production 为 A -> B C, dot 为 2 (其产生式体的项数量) <br>
-     *
-     * @param production 产生式
-     * @param dot        目前解析到的位置
+     * 为项目编码
      */
-    private record Item(Production production, int dot) {
-        /**
-         * @return 点的位置是否在产生式的末尾
-         */
-        public boolean isDotAtEnd() {
-            return production.body().size() == dot;
+    private void numberItems() {
+        itemWidth = productions.stream().mapToInt(production -> production.body().size()).max().orElse(0) + 1;
+
+        symbols.addAll(nonTerminalList);
+        symbols.addAll(terminalList);
+        final var symbolIndex = new HashMap<Term, Integer>();
+        for (int i = 0; i < symbols.size(); i++) {
+            symbolIndex.put(symbols.get(i), i);
         }
 
-        /**
-         * @return 获得点后面的文法符号; 若点的位置在末尾则返回空
-         */
-        public Optional<Term> getAfterDot() {
-            if (isDotAtEnd()) {
-                return Optional.empty();
-            } else {
-                return Optional.of(production.body().get(dot));
+        afterDotOfItem = new int[productions.size() * itemWidth];
+        Arrays.fill(afterDotOfItem, -1);
+        final var initialItems = new ArrayList<List<Integer>>();
+        nonTerminalList.forEach(nonTerminal -> initialItems.add(new ArrayList<>()));
+        for (int p = 0; p < productions.size(); p++) {
+            final var production = productions.get(p);
+            final var body = production.body();
+            for (int dot = 0; dot < body.size(); dot++) {
+                afterDotOfItem[p * itemWidth + dot] = symbolIndex.get(body.get(dot));
             }
+            initialItems.get(nonTerminalOrdinal.get(production.head())).add(p * itemWidth);
         }
 
-        /**
-         * @return 获得当前项目的后继项; 若点的位置在末尾则返回空
-         */
-        public Optional<Item> getNextItem() {
-            if (isDotAtEnd()) {
-                return Optional.empty();
-            } else {
-                return Optional.of(new Item(production, dot + 1));
-            }
+        initialItemsOf = new int[nonTerminalList.size()][];
+        for (int i = 0; i < initialItemsOf.length; i++) {
+            initialItemsOf[i] = initialItems.get(i).stream().mapToInt(Integer::intValue).toArray();
         }
 
-        @Override
-        public String toString() {
-            final var builder = new StringBuilder();
+    }
 
-            builder.append(production.head());
-            builder.append(" -> ");
+    private Production productionOf(int item) {
+        return productions.get(item / itemWidth);
+    }
 
-            final var body = production.body();
-            for (int i = 0; i < body.size(); i++) {
-                if (i == dot) {
-                    builder.append(" .");
-                }
-                builder.append(" ").append(body.get(i));
-            }
+    private int dotOf(int item) {
+        return item % itemWidth;
+    }
 
-            if (dot == body.size()) {
+    private String itemToString(int item) {
+        final var production = productionOf(item);
+        final var dot = dotOf(item);
+        final var builder = new StringBuilder();
+
+        builder.append(production.head());
+        builder.append(" -> ");
+
+        final var body = production.body();
+        for (int i = 0; i < body.size(); i++) {
+            if (i == dot) {
                 builder.append(" .");
             }
+            builder.append(" ").append(body.get(i));
+        }
 
-            return builder.toString();
+        if (dot == body.size()) {
+            builder.append(" .");
         }
+
+        return builder.toString();
     }
 
-    private final Map<Set<Item>, Status> belongTo = new HashMap<>();
-    private final Map<Status, Set<Item>> including = new HashMap<>();
     private final List<Status> allStatusInIndexOrder = new ArrayList<>();
+    // 以状态编号为下标, 该状态的项目集 (核在前, 其余按加入闭包的顺序)
+    private final List<int[]> itemsOfState = new ArrayList<>();
+    // 以状态编号为下标, 该状态经 symbols 中各文法符号转移到的状态编号, 没有转移时为 -1; 在构造规范项目集族时顺便记下
+    private final List<int[]> gotoEdges = new ArrayList<>();
 
     /**
      * 构造出所有状态并维护状态与项集之间的对应关系
+     *
+     * @param pool 并行构造时使用的线程池, 为 null 时串行构造
      */
-    private void constructDFA() {
-        final var argumentProduction = productions.get(0);
-        final var initItem = new Item(argumentProduction, 0);
-        final var collections = constructCanonicalLRCollection(initItem);
-
-        for (int idx = 0; idx < collections.size(); idx++) {
-            final var status = Status.create(idx);
-            allStatusInIndexOrder.add(status);
+    private void constructDFA(ForkJoinPool pool) {
+        numberItems();
+        if (mode == Mode.LR1) {
+            lr1Collection = new LR1Collection(
+                nonTerminalList.size(), terminalList.size(), terminalOrdinal.get(TokenKind.eof()), nullable, first,
+                itemWidth, afterDotOfItem, initialItemsOf
+            );
+            lr1Collection.construct();
+            itemsOfState.addAll(lr1Collection.getItemsOfState());
+            gotoEdges.addAll(lr1Collection.getGotoEdges());
+        } else if (pool == null) {
+            constructCanonicalLRCollection();
+        } else {
+            constructCanonicalLRCollectionParallel(pool);
+        }
 
-            final var items = collections.get(idx);
-            including.put(status, items);
-            belongTo.put(items, status);
+        for (int idx = 0; idx < itemsOfState.size(); idx++) {
+            allStatusInIndexOrder.add(Status.create(idx));
         }
     }
 
     /**
-     * @param head 头部符号
-     * @return 返回一个流, 其中的元素都是以 head 为头的产生式
+     * 求闭包时的工作区, 以时间戳代替每次清空标记. 每个线程各用一个.
      */
-    private Stream<Production> getProductionsByHead(Term head) {
-        return productions.stream().filter(production -> production.head().equals(head));
+    private final class ClosureWorkspace {
+        private int stamp = 0;
+        private final int[] visitedStamp = new int[afterDotOfItem.length];
+        private final int[] expandedStamp = new int[nonTerminalList.size()];
+        private final int[] buffer = new int[afterDotOfItem.length];
     }
 
     /**
-     * 构造项集 {@code sourceItem} 的闭包, 相当于理论课中的 CLOSURE(I) 函数
+     * 构造核 {@code kernel} 的闭包, 相当于理论课中的 CLOSURE(I) 函数
      *
-     * @param sourceItem 项集 I
-     * @return 闭包
+     * @param kernel    项集 I 的核
+     * @param workspace 工作区
+     * @return 闭包, 核中的项目在前
      */
-    private Set<Item> constructClosure(Set<Item> sourceItem) {
-        // 采用 BFS 的方法来避免每次都检测集合的更改
-        final var result = new LinkedHashSet<>(sourceItem);
-        // 已经找到, 但是还未完全探索其能展开的项的项
-        // 类似于 BFS 的队列或者是 mark-and-sweep GC 算法里的灰色列表
-        final var unexpanded = new ArrayDeque<>(sourceItem);
-
-        while (!unexpanded.isEmpty()) {
-            final var top = unexpanded.pollFirst();
-            // 获得当前项中点后面的符号
-            top.getAfterDot().ifPresent(afterDot ->
-                // 随后查找以该符号作为头部的产生式
-                getProductionsByHead(afterDot)
-                    // 构造点在对应产生式开头的新项
-                    .map(production -> new Item(production, 0))
-                    // 对于不在 result 中的新项
-                    .filter(item -> !result.contains(item))
-                    // 加入队列并加入结果中
-                    .peek(unexpanded::add)
-                    .forEach(result::add));
-        }
-
-        return result;
+    private int[] constructClosure(int[] kernel, ClosureWorkspace workspace) {
+        final var stamp = ++workspace.stamp;
+        final var visitedStamp = workspace.visitedStamp;
+        final var expandedStamp = workspace.expandedStamp;
+        final var buffer = workspace.buffer;
+
+        var size = 0;
+        for (final var item : kernel) {
+            visitedStamp[item] = stamp;
+            buffer[size++] = item;
+        }
+
+        // buffer 本身即是 BFS 的队列
+        for (int i = 0; i < size; i++) {
+            final var afterDot = afterDotOfItem[buffer[i]];
+            // 点后面是非终结符, 且在本次求闭包中还未展开过
+            if (afterDot >= 0 && afterDot < nonTerminalList.size() && expandedStamp[afterDot] != stamp) {
+                expandedStamp[afterDot] = stamp;
+                for (final var item : initialItemsOf[afterDot]) {
+                    if (visitedStamp[item] != stamp) {
+                        visitedStamp[item] = stamp;
+                        buffer[size++] = item;
+                    }
+                }
+            }
+        }
+
+        return Arrays.copyOf(buffer, size);
     }
 
     /**
-     * 相当于理论课中的 GO(I, X) 函数 (转移函数)
+     * 对项集 I 的所有项按点后面的文法符号 X 分组, 并求出每组的后继项, 一次得到所有 GO(I, X) 的核
      *
      * @param items 当前项集 I
-     * @param term  文法符号 X
-     * @return I 关于 X 的后继项目集
+     * @return 以文法符号在 symbols 中的下标为下标, GO(I, X) 的核 (升序), 为空时为 null
+     */
+    private int[][] constructGotoKernels(int[] items) {
+        final var counts = new int[symbols.size()];
+        for (final var item : items) {
+            final var afterDot = afterDotOfItem[item];
+            if (afterDot >= 0) {
+                counts[afterDot]++;
+            }
+        }
+
+        final var kernels = new int[symbols.size()][];
+        for (final var item : items) {
+            final var afterDot = afterDotOfItem[item];
+            if (afterDot >= 0) {
+                if (kernels[afterDot] == null) {
+                    kernels[afterDot] = new int[counts[afterDot]];
+                    counts[afterDot] = 0;
+                }
+                // 后继项目就是点右移一位
+                kernels[afterDot][counts[afterDot]++] = item + 1;
+            }
+        }
+
+        for (final var kernel : kernels) {
+            if (kernel != null) {
+                Arrays.sort(kernel);
+            }
+        }
+        return kernels;
+    }
+
+    /**
+     * 构造 LR(0) 规范项目集族, 同时记录各项目集之间的转移
+     * <br>
+     * 项目集由其核唯一确定, 所以只需以核判重, 只有新出现的核才需要求闭包. 核的编号就是状态的编号.
      */
-    private Set<Item> constructGoto(Set<Item> items, Term term) {
-        final var kernelForGoto = items.stream()
-            // 先筛选出 I 中所有点后面是 term 的项
-            .filter(item -> item.getAfterDot().map(term::equals).orElse(false))
-            // 然后分别求出每一个项的后继项
-            // 这个项集就是后继项目集的核
-            .map(Item::getNextItem).flatMap(Optional::stream)
-            .collect(Collectors.toSet());
-
-        // 随后从后继项目集的核中构造闭包即可得到后继项目集
-        return constructClosure(kernelForGoto);
+    private void constructCanonicalLRCollection() {
+        final var kernelTable = new KernelTable();
+        final var workspace = new ClosureWorkspace();
+
+        // 构造初始项目集族, 起始项目 S -> . S' 即第一条产生式的第一个项目
+        final var initKernel = new int[]{0};
+        kernelTable.intern(initKernel, KernelTable.hash(initKernel));
+        itemsOfState.add(constructClosure(initKernel, workspace));
+
+        // 同样以 BFS 形式搜索, itemsOfState 本身即是队列
+        for (int idx = 0; idx < itemsOfState.size(); idx++) {
+            final var kernels = constructGotoKernels(itemsOfState.get(idx));
+            final var edges = new int[symbols.size()];
+            Arrays.fill(edges, -1);
+
+            // 按文法符号的顺序依次处理各后继项目集
+            for (int symbol = 0; symbol < symbols.size(); symbol++) {
+                final var kernel = kernels[symbol];
+                if (kernel == null) {
+                    continue;
+                }
+
+                final var to = kernelTable.intern(kernel, KernelTable.hash(kernel));
+                if (to == itemsOfState.size()) {
+                    // 新的项目集, 加入末尾等待探索
+                    itemsOfState.add(constructClosure(kernel, workspace));
+                }
+                edges[symbol] = to;
+            }
+
+            gotoEdges.add(edges);
+        }
     }
 
     /**
-     * 构造 LR(0) 规范项目集族
+     * 以核的内容判等的项目集核, 用作并发驻留表的键
+     */
+    private record Kernel(int[] items, int hash) {
+        static Kernel of(int[] items) {
+            return new Kernel(items, KernelTable.hash(items));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Kernel kernel
+                && kernel.hash == hash
+                && Arrays.equals(kernel.items, items);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 并行地构造 LR(0) 规范项目集族, 得到的状态编号与 {@link #constructCanonicalLRCollection()} 完全相同
+     * <br>
+     * 按 BFS 的层推进. 对当前层的所有状态, 并行地求出它们关于各文法符号的后继核, 并在一张并发的驻留表中判重,
+     * 使相同的核共用同一个对象. 然后按 (父状态编号, 文法符号) 的顺序串行地为新出现的核编号, 这正是串行 BFS 发现它们的顺序,
+     * 由于核已被驻留, 这一步只需以对象身份查表. 最后并行地求出新状态的闭包, 它们构成下一层.
      *
-     * @param initItem 起始项目 S -> . S'
-     * @return 规范项目集族
+     * @param pool 线程池
      */
-    private List<Set<Item>> constructCanonicalLRCollection(Item initItem) {
-        // 先收集所有的文法符号备用
-        final var terms = new LinkedHashSet<Term>();
-        terms.addAll(nonTerminals);
-        terms.addAll(terminals);
-
-        // 构造初始项目集族
-        final var initClosure = constructClosure(Set.of(initItem));
-
-        // 同样以 BFS 形式搜索
-        final var result = new LinkedHashSet<>(Set.of(initClosure));
-        final var unexpanded = new ArrayDeque<>(Set.of(initClosure));
-
-        while (!unexpanded.isEmpty()) {
-            final var items = unexpanded.pollFirst();
-
-            // 对于每个未被探索的集族
-            for (final var term : terms) {
-                // 尝试对每一个文法符号都求一个后继项目集
-                final var to = constructGoto(items, term);
-                // 如果还没被加入到 result 中
-                if (!to.isEmpty() && !result.contains(to)) {
-                    // 就加入 result 和待探索列表中
-                    result.add(to);
-                    unexpanded.addLast(to);
+    private void constructCanonicalLRCollectionParallel(ForkJoinPool pool) {
+        final var interned = new ConcurrentHashMap<Kernel, Kernel>();
+        final var stateOfKernel = new IdentityHashMap<Kernel, Integer>();
+
+        final var initKernel = Kernel.of(new int[]{0});
+        interned.put(initKernel, initKernel);
+        stateOfKernel.put(initKernel, 0);
+        itemsOfState.add(constructClosure(initKernel.items(), new ClosureWorkspace()));
+
+        var levelBegin = 0;
+        while (levelBegin < itemsOfState.size()) {
+            final var levelEnd = itemsOfState.size();
+
+            // 并行: 求当前层各状态的后继核并驻留
+            final var successors = new Kernel[levelEnd - levelBegin][];
+            final var offset = levelBegin;
+            forEachInChunks(pool, levelBegin, levelEnd, (from, to) -> {
+                for (int state = from; state < to; state++) {
+                    final var kernels = constructGotoKernels(itemsOfState.get(state));
+                    final var row = new Kernel[kernels.length];
+                    for (int symbol = 0; symbol < kernels.length; symbol++) {
+                        if (kernels[symbol] != null) {
+                            final var kernel = Kernel.of(kernels[symbol]);
+                            final var existing = interned.putIfAbsent(kernel, kernel);
+                            row[symbol] = existing == null ? kernel : existing;
+                        }
+                    }
+                    successors[state - offset] = row;
+                }
+            });
+
+            // 串行: 按 (父状态编号, 文法符号) 的顺序为新出现的核编号
+            final var newKernels = new ArrayList<Kernel>();
+            for (final var row : successors) {
+                final var edges = new int[symbols.size()];
+                Arrays.fill(edges, -1);
+                for (int symbol = 0; symbol < row.length; symbol++) {
+                    final var kernel = row[symbol];
+                    if (kernel == null) {
+                        continue;
+                    }
+
+                    var to = stateOfKernel.get(kernel);
+                    if (to == null) {
+                        to = levelEnd + newKernels.size();
+                        stateOfKernel.put(kernel, to);
+                        newKernels.add(kernel);
+                    }
+                    edges[symbol] = to;
                 }
+                gotoEdges.add(edges);
             }
+
+            // 并行: 求新状态的闭包
+            final var closures = new int[newKernels.size()][];
+            forEachInChunks(pool, 0, newKernels.size(), (from, to) -> {
+                final var workspace = new ClosureWorkspace();
+                for (int i = from; i < to; i++) {
+                    closures[i] = constructClosure(newKernels.get(i).items(), workspace);
+                }
+            });
+            itemsOfState.addAll(Arrays.asList(closures));
+
+            levelBegin = levelEnd;
+        }
+    }
+
+    /**
+     * 把 [begin, end) 分成若干块交给线程池处理, 并等待全部完成
+     */
+    private static void forEachInChunks(ForkJoinPool pool, int begin, int end, BiConsumer<Integer, Integer> action) {
+        final var chunkCount = Math.max(1, Math.min(end - begin, pool.getParallelism() * 4));
+        final var chunkSize = (end - begin + chunkCount - 1) / chunkCount;
+
+        final var tasks = new ArrayList<ForkJoinTask<?>>();
+        for (int from = begin; from < end; from += chunkSize) {
+            final var chunkBegin = from;
+            final var chunkEnd = Math.min(end, from + chunkSize);
+            tasks.add(pool.submit(() -> action.accept(chunkBegin, chunkEnd)));
+        }
+        tasks.forEach(ForkJoinTask::join);
+    }
+
+    // LR(1) 模式下的项目集族, 同时记有各规约项目的向前看符号
+    private LR1Collection lr1Collection = null;
+    // LALR 模式下各规约项目的向前看符号
+    private LALRLookaheads lookaheads = null;
+
+    /**
+     * LALR 模式下在 LR(0) 自动机上计算各规约项目的向前看符号, SLR 模式下直接使用 FOLLOW 集合, 无需计算
+     */
+    private void calcLookaheads() {
+        if (mode != Mode.LALR) {
+            return;
+        }
+
+        final var headOf = new int[productions.size()];
+        final var bodyLengthOf = new int[productions.size()];
+        for (int p = 0; p < productions.size(); p++) {
+            headOf[p] = nonTerminalOrdinal.get(productions.get(p).head());
+            bodyLengthOf[p] = productions.get(p).body().size();
         }
 
-        return new ArrayList<>(result);
+        lookaheads = new LALRLookaheads(
+            nonTerminalList.size(), terminalList.size(), terminalOrdinal.get(TokenKind.eof()), nullable,
+            headOf, bodyLengthOf, itemWidth, afterDotOfItem, itemsOfState, gotoEdges
+        );
+        lookaheads.compute();
     }
 
     /**
@@ -364,29 +673,34 @@ public class TableGenerator {
     private void genTable() {
         // 依索引顺序对每个状态的每个项目
         for (final var status : allStatusInIndexOrder) {
-            for (final var item : including.get(status)) {
-                final var afterDotOpt = item.getAfterDot();
+            final var edges = gotoEdges.get(status.index());
+            for (final var item : itemsOfState.get(status.index())) {
+                final var afterDot = afterDotOfItem[item];
 
                 // 根据项目的点的位置和点后面跟着的文法符号进行分类
-                if (afterDotOpt.isEmpty()) {
-                    final var argumentProduction = productions.get(0);
-                    if (item.production().equals(argumentProduction)) {
+                if (afterDot < 0) {
+                    final var production = productionOf(item);
+                    if (item / itemWidth == 0) {
                         // S -> S' .
                         // 如果项目代表起始文法的末尾, 那么再遇到 EOF 就 accept 了
                         status.setAction(TokenKind.eof(), Action.accept());
                     } else {
                         // A -> alpha .
                         // 如果项目代表某个产生式的末尾, 那么再遇到对于任何位于 follow(A) 内的文法符号都应该规约 A
-                        final var production = item.production();
-                        final var head = production.head();
-                        for (final var a : follow.get(head)) {
-                            status.setAction(a, Action.reduce(production));
+                        // LALR 与 LR(1) 模式下则只对该状态中该项目的向前看符号规约
+                        final var lookahead = switch (mode) {
+                            case SLR -> follow[nonTerminalOrdinal.get(production.head())];
+                            case LALR -> lookaheads.get(status.index(), item);
+                            case LR1 -> lr1Collection.get(status.index(), item);
+                        };
+                        for (int a = lookahead.nextSetBit(0); a >= 0; a = lookahead.nextSetBit(a + 1)) {
+                            status.setAction(terminalList.get(a), Action.reduce(production));
                         }
                     }
 
                 } else {
-                    final var symbol = afterDotOpt.get();
-                    final var next = belongTo.get(constructGoto(including.get(status), symbol));
+                    final var symbol = symbols.get(afterDot);
+                    final var next = allStatusInIndexOrder.get(edges[afterDot]);
 
                     if (symbol instanceof TokenKind tokenKind) {
                         // A -> alpha . a beta
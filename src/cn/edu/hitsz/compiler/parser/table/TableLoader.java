@@ -3,13 +3,20 @@ package cn.edu.hitsz.compiler.parser.table;
 import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 读取 "编译工作台" 生成的语法分析表并将其转换为 LRTable 结构, 你不应该修改此文件
+ * <br>
+ * 第三方工具生成的表可能有成千上万个状态, 所以这里不先把文件切成行和单元格, 而是映射文件后逐字节扫描一遍:
+ * 状态编号与移入目标直接解析为 int, 并以编号为下标在数组中找到对应的 Status;
+ * 规约的产生式则在一张以产生式文本的 UTF-8 字节为键的开放寻址哈希表中直接按字节查找, 不必为每个单元格构造字符串.
+ * 只有两行表头会被解码为字符串.
  */
 public class TableLoader {
     /**
@@ -19,19 +26,21 @@ public class TableLoader {
      * @return LRTable
      */
     public LRTable load(String path) {
-        final var csv = FileUtils.readCSV(path);
+        buffer = FileUtils.mapFile(path);
+        position = 0;
+        skipByteOrderMark();
+
         // 表头是 状态, ACTION, ..., GOTO, ... 那一行
-        final var tableHeader = csv.get(0);
+        final var tableHeader = readRowAsStrings();
 
         // 根据该行确定各个部分的列号
-        final var statusColumnIndex = 0;
         final var actionColumnBegin = 1;
         final var actionColumnEnd = tableHeader.indexOf("GOTO");
         final var gotoColumnBegin = actionColumnEnd;
         final var gotoColumnEnd = tableHeader.size();
 
         // 符号行是存放终结符与非终结符的部分
-        final var symbolHeader = csv.get(1);
+        final var symbolHeader = readRowAsStrings();
         final var terminals = symbolHeader
             .subList(actionColumnBegin, actionColumnEnd).stream()
             .map(TokenKind::fromString).toList();
@@ -39,39 +48,54 @@ public class TableLoader {
             .subList(gotoColumnBegin, gotoColumnEnd).stream()
             .map(NonTerminal::new).toList();
 
-        // 再往下便是表的主体部分
-        final var statusRows = csv.subList(2, csv.size());
+        buildProductionIndex();
 
-        // 首先读取所有状态编号, 构造出对应的 Status 对象
-        for (final var row : statusRows) {
-            final var statusIndexString = row.get(statusColumnIndex);
-            final var statusIndex = Integer.parseInt(statusIndexString);
-            final var status = Status.create(statusIndex);
+        // 再往下便是表的主体部分, 每行依次为状态编号, ACTION 表与 GOTO 表
+        // 移入与 GOTO 的目标可能是后面的行才出现的状态, 所以状态在第一次被引用时就创建出来
+        while (position < buffer.limit()) {
+            if (atEndOfRow()) {
+                // 跳过空行
+                nextRow();
+                continue;
+            }
 
+            final var status = statusOf(parseInt(cellEnd()));
+            if (rowSeen.get(status.index())) {
+                throw new RuntimeException("Duplicated status in table: " + status);
+            }
+            rowSeen.set(status.index());
             statusInIndexOrder.add(status);
-            statuses.put(statusIndex, status);
-        }
-
-        // 然后再读取 ACTION 和 GOTO 表, 为构造出的 Status 对象填充 action 和 goto 信息
-        for (final var row : statusRows) {
-            final var status = statuses.get(Integer.valueOf(row.get(statusColumnIndex)));
 
             // 处理 ACTION 表
-            for (int idx = actionColumnBegin; idx < actionColumnEnd; idx++) {
-                final var relativeIndex = idx - actionColumnBegin;
-                final var terminal = terminals.get(relativeIndex);
-
-                final var action = parseAction(row.get(idx));
-                status.setAction(terminal, action);
+            for (final var terminal : terminals) {
+                nextCell();
+                final var end = cellEnd();
+                // 空单元格代表错误动作, Status 中没有的项即为错误, 所以无需填充
+                if (end != position) {
+                    status.setAction(terminal, parseAction(end));
+                }
+                position = end;
             }
 
             // 处理 GOTO 表
-            for (int idx = gotoColumnBegin; idx < gotoColumnEnd; idx++) {
-                final var relativeIndex = idx - gotoColumnBegin;
-                final var nonTerminal = nonTerminals.get(relativeIndex);
+            for (final var nonTerminal : nonTerminals) {
+                nextCell();
+                final var end = cellEnd();
+                if (end != position) {
+                    status.setGoto(nonTerminal, statusOf(parseInt(end)));
+                }
+                position = end;
+            }
+
+            if (!atEndOfRow()) {
+                throw new RuntimeException("Too many cells in row of status " + status);
+            }
+            nextRow();
+        }
 
-                final var goto_ = parseGoto(row.get(idx));
-                status.setGoto(nonTerminal, goto_);
+        for (final var status : statuses) {
+            if (status != null && !rowSeen.get(status.index())) {
+                throw new RuntimeException("Status %d is referred to but not defined in table".formatted(status.index()));
             }
         }
 
@@ -80,55 +104,223 @@ public class TableLoader {
     }
 
     private final List<Status> statusInIndexOrder = new ArrayList<>();
-    private final Map<Integer, Status> statuses = new HashMap<>();
+    // 以状态编号为下标, 按需创建
+    private Status[] statuses = new Status[16];
+    // 已经读到其所在行的状态
+    private final BitSet rowSeen = new BitSet();
+
+    private ByteBuffer buffer;
+    private int position;
+
+    private Status statusOf(int index) {
+        if (index >= statuses.length) {
+            statuses = Arrays.copyOf(statuses, Math.max(statuses.length * 2, index + 1));
+        }
+        if (statuses[index] == null) {
+            statuses[index] = Status.create(index);
+        }
+        return statuses[index];
+    }
 
     /**
-     * 解析 ACTION 表的字符串
+     * 解析 ACTION 表的单元格, 即 position 到 end 之间的字节
      *
-     * @param text 对应单元格的文本
+     * @param end 单元格的结尾
      * @return 解析出的动作
      */
-    private Action parseAction(String text) {
-        // 空字符串代表错误动作
-        if (text.isEmpty()) {
-            return Action.error();
-        }
-
-        // 动作总是分为 "<命令> <载荷>" 两部分, 以空格分割
-        // limit 是 < 的, limit = 2 意味着切割次数只能 < 2, 也就是切割一次.
-        // 有可能 words 的长度只有 1, 这时候 text 就是 accept
-        final var words = text.split(" ", 2);
-        final var command = words[0];
-
-        return switch (command) {
-            case "shift" -> {
-                final var statusIndex = Integer.valueOf(words[1]);
-                final var status = statuses.get(statusIndex);
-                yield Action.shift(status);
+    private Action parseAction(int end) {
+        // 动作总是分为 "<命令> <载荷>" 两部分, 以空格分割; accept 则没有载荷
+        if (startsWith(SHIFT, end)) {
+            position += SHIFT.length;
+            return Action.shift(statusOf(parseInt(end)));
+        } else if (startsWith(REDUCE, end)) {
+            return Action.reduce(findProduction(position + REDUCE.length, end));
+        } else if (startsWith(ACCEPT, end) && position + ACCEPT.length == end) {
+            return Action.accept();
+        } else {
+            throw new RuntimeException("Illegal action in table: " + decode(position, end));
+        }
+    }
+
+    private static final byte[] SHIFT = "shift ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] REDUCE = "reduce ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ACCEPT = "accept".getBytes(StandardCharsets.US_ASCII);
+
+    private boolean startsWith(byte[] prefix, int end) {
+        if (end - position < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(position + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //==================== 按字节查找产生式 ==============================//
+
+    /**
+     * 以 {@link GrammarInfo#getProductionByText(String)} 接受的所有文本建立查找表
+     */
+    private void buildProductionIndex() {
+        final var productions = GrammarInfo.getProductions();
+        productionTexts = new byte[productions.size()][];
+        productionOfText = new Production[productions.size()];
+        slots = new int[Integer.highestOneBit(Math.max(productions.size(), 1) * 4)];
+        Arrays.fill(slots, -1);
+
+        var id = 0;
+        for (final var entry : productions.entrySet()) {
+            final var text = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            var slot = hash(text, 0, text.length) & (slots.length - 1);
+            while (slots[slot] != -1) {
+                slot = (slot + 1) & (slots.length - 1);
             }
+            productionTexts[id] = text;
+            productionOfText[id] = entry.getValue();
+            slots[slot] = id++;
+        }
+    }
 
-            case "reduce" -> {
-                final var production = GrammarInfo.getProductionByText(words[1]);
-                yield Action.reduce(production);
+    private Production findProduction(int begin, int end) {
+        var slot = hash(buffer, begin, end) & (slots.length - 1);
+        while (slots[slot] != -1) {
+            final var text = productionTexts[slots[slot]];
+            if (equals(text, begin, end)) {
+                return productionOfText[slots[slot]];
             }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        throw new RuntimeException("Unknown text of production: " + decode(begin, end));
+    }
 
-            case "accept" -> Action.accept();
+    private boolean equals(byte[] text, int begin, int end) {
+        if (text.length != end - begin) {
+            return false;
+        }
+        for (int i = 0; i < text.length; i++) {
+            if (buffer.get(begin + i) != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-            default -> throw new RuntimeException("Illegal action in table: " + text);
-        };
+    private static int hash(byte[] bytes, int begin, int end) {
+        var hash = 1;
+        for (int i = begin; i < end; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int hash(ByteBuffer bytes, int begin, int end) {
+        var hash = 1;
+        for (int i = begin; i < end; i++) {
+            hash = 31 * hash + bytes.get(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private byte[][] productionTexts;
+    private Production[] productionOfText;
+    // 开放寻址 (线性探测) 的哈希表, 存放 productionTexts 的下标, -1 为空
+    private int[] slots;
+
+    //==================== 逐字节扫描 CSV ==============================//
+
+    private void skipByteOrderMark() {
+        if (buffer.limit() >= 3
+            && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+            position = 3;
+        }
     }
 
     /**
-     * 解析 GOTO 表中的字符串
-     *
-     * @param text 对应单元格的文本
-     * @return 解析出的状态
+     * @return 从 position 开始的单元格的结尾, 即下一个逗号, 换行或文件末尾的位置
      */
-    private Status parseGoto(String text) {
-        if (text.isEmpty()) {
-            return Status.error();
-        } else {
-            return statuses.get(Integer.valueOf(text));
+    private int cellEnd() {
+        var end = position;
+        while (end < buffer.limit()) {
+            final var b = buffer.get(end);
+            if (b == ',' || b == '\n' || b == '\r') {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+
+    private boolean atEndOfRow() {
+        if (position >= buffer.limit()) {
+            return true;
+        }
+        final var b = buffer.get(position);
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * 跳过当前单元格后面的逗号
+     */
+    private void nextCell() {
+        if (position >= buffer.limit() || buffer.get(position) != ',') {
+            throw new RuntimeException("Too few cells in row at byte " + position);
         }
+        position++;
+    }
+
+    /**
+     * 跳过行尾的换行 (\n 或 \r\n)
+     */
+    private void nextRow() {
+        if (position < buffer.limit() && buffer.get(position) == '\r') {
+            position++;
+        }
+        if (position < buffer.limit() && buffer.get(position) == '\n') {
+            position++;
+        }
+    }
+
+    /**
+     * 把 position 到 end 之间的十进制数字解析为 int, 并把 position 移到 end
+     */
+    private int parseInt(int end) {
+        if (position == end) {
+            throw new RuntimeException("Expect a number at byte " + position);
+        }
+
+        var value = 0;
+        for (; position < end; position++) {
+            final var digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10) {
+                throw new RuntimeException("Illegal number in table: " + decode(position, end));
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * 把表头的一整行解码后切为单元格
+     */
+    private List<String> readRowAsStrings() {
+        final var cells = new ArrayList<String>();
+        while (true) {
+            final var end = cellEnd();
+            cells.add(decode(position, end));
+            position = end;
+            if (atEndOfRow()) {
+                nextRow();
+                return cells;
+            }
+            nextCell();
+        }
+    }
+
+    private String decode(int begin, int end) {
+        final var bytes = new byte[end - begin];
+        buffer.get(begin, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 }
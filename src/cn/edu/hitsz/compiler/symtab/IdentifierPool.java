@@ -0,0 +1,113 @@
+package cn.edu.hitsz.compiler.symtab;
+
+import java.util.Arrays;
+
+/**
+ * 标识符池
+ * <br>
+ * 为每个不同的标识符分配一个从 0 开始的稠密整数编号. 标识符在词法分析时被加入池中, 此后符号表, IR 变量与汇编生成都以该编号
+ * 而非标识符文本作为键, 整个编译流程中每个标识符的文本只需要被哈希一次.
+ * <br>
+ * 实现上采用开放寻址 (线性探测) 的哈希表, 表中只存放编号, 标识符文本与其哈希值按编号存放在数组中.
+ */
+public final class IdentifierPool {
+    public IdentifierPool() {
+        Arrays.fill(slots, NOT_FOUND);
+    }
+
+    /**
+     * 代表标识符不在池中的编号
+     */
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * 把标识符加入池中
+     *
+     * @param name 标识符
+     * @return 标识符的编号, 若已在池中则返回已有编号
+     */
+    public int intern(String name) {
+        final var hash = spread(name.hashCode());
+        int slot = hash & (slots.length - 1);
+        while (slots[slot] != NOT_FOUND) {
+            final var id = slots[slot];
+            if (hashes[id] == hash && names[id].equals(name)) {
+                return id;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        final var id = size++;
+        names[id] = name;
+        hashes[id] = hash;
+        slots[slot] = id;
+
+        // 保持装载因子不超过 1/2
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * @param name 标识符
+     * @return 标识符的编号, 若不在池中则返回 {@link #NOT_FOUND}
+     */
+    public int find(String name) {
+        final var hash = spread(name.hashCode());
+        int slot = hash & (slots.length - 1);
+        while (slots[slot] != NOT_FOUND) {
+            final var id = slots[slot];
+            if (hashes[id] == hash && names[id].equals(name)) {
+                return id;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * @param id 编号
+     * @return 该编号对应的标识符
+     */
+    public String getName(int id) {
+        if (id < 0 || id >= size) {
+            throw new RuntimeException("Unknown identifier id: " + id);
+        }
+        return names[id];
+    }
+
+    /**
+     * @return 池中标识符的个数, 即下一个新标识符将得到的编号
+     */
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, NOT_FOUND);
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & (slots.length - 1);
+            while (slots[slot] != NOT_FOUND) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = id;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size = 0;
+}
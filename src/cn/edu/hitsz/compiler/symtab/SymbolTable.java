@@ -4,9 +4,8 @@ import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * 符号表
@@ -14,13 +13,163 @@ import java.util.Map;
  * 由于源语言比较简易, 加之 Java 中具有非常好用的通用数据结构类型, 本项目其实并不一定需要一个集中的 "符号表" 来存储源语言中的
  * <b>所有符号的所有信息</b>. 但为了切合理论课程教学, 提高实验实践技能的通用性, 我们按照一般编译器项目中符号表的设计设计了该符号表.
  * 其在代码中的作用可能并不明显, 但我们希望同学们可以借此体验符号表的设计思想.
+ * <br>
+ * 实现上, 条目按加入顺序获得从 0 开始的稠密编号, 并存放在一个可增长的数组中. 按名字查找时先经过标识符池 (一张开放寻址的哈希表)
+ * 得到标识符编号, 再经由一个以标识符编号为下标的数组得到条目编号, 全程没有装箱与额外的哈希表.
+ * 输出时所需的按名字排序的视图是增量维护的: 每次输出只需对上次输出之后新加入的条目排序, 再与已排好序的部分归并.
+ * <br>
+ * 符号表支持嵌套的作用域. 上述 "标识符编号 -> 条目编号" 的数组总是存放每个标识符当前可见的 (最内层的) 绑定, 因此查找的开销与
+ * 没有作用域时完全相同. 在内层作用域中声明符号时, 被遮蔽的旧绑定被记入一个撤销日志; 退出作用域时按日志恢复即可.
+ * 进入作用域是 O(1) 的, 退出作用域的开销与该作用域中的声明数成正比, 均摊下来也是 O(1) 的, 全程不需要复制任何表.
+ * <br>
+ * 词法分析只把标识符加入标识符池, 条目由语义分析在声明时 (declare) 于当前作用域中创建. 只有全局作用域中的条目会被输出.
  */
 public class SymbolTable {
 
-    private final Map<String, SymbolTableEntry> symbolTable;
-
     public SymbolTable() {
-        this.symbolTable = new HashMap<>();
+        this.identifierPool = new IdentifierPool();
+        Arrays.fill(entryOfIdentifier, NO_ENTRY);
+    }
+
+    /**
+     * @return 符号表所使用的标识符池, 词法分析, IR 生成等阶段都通过它获得标识符的编号
+     */
+    public IdentifierPool getIdentifierPool() {
+        return identifierPool;
+    }
+
+    /**
+     * 以标识符编号获取符号表中已有的条目
+     *
+     * @param identifierId 标识符在 {@link #getIdentifierPool()} 中的编号
+     * @return 该符号在符号表中的条目
+     * @throws RuntimeException 该符号在表中不存在
+     */
+    public SymbolTableEntry get(int identifierId) {
+        if (!has(identifierId)) {
+            final var name = identifierId >= 0 && identifierId < identifierPool.size()
+                ? "'" + identifierPool.getName(identifierId) + "'"
+                : "#" + identifierId;
+            throw new RuntimeException("Symbol " + name + " not found in the symbol table.");
+        }
+        return entries[entryOfIdentifier[identifierId]];
+    }
+
+    /**
+     * 以标识符编号在符号表中新增条目
+     *
+     * @param identifierId 标识符在 {@link #getIdentifierPool()} 中的编号
+     * @return 该符号在符号表中对应的新条目
+     * @throws RuntimeException 该符号已在表中存在
+     */
+    public SymbolTableEntry add(int identifierId) {
+        if (has(identifierId)) {
+            throw new RuntimeException("Symbol '" + identifierPool.getName(identifierId) + "' already exists in the symbol table.");
+        }
+
+        // 不记入撤销日志, 因此即便当前位于内层作用域, 新条目也会一直留在全局作用域中
+        return bind(identifierId, 0);
+    }
+
+    /**
+     * 新建条目并使其成为该标识符当前可见的绑定
+     */
+    private SymbolTableEntry bind(int identifierId, int scopeDepth) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+            depthOfEntry = Arrays.copyOf(depthOfEntry, size * 2);
+        }
+        if (identifierId >= entryOfIdentifier.length) {
+            final var oldLength = entryOfIdentifier.length;
+            entryOfIdentifier = Arrays.copyOf(entryOfIdentifier, Math.max(oldLength * 2, identifierId + 1));
+            Arrays.fill(entryOfIdentifier, oldLength, entryOfIdentifier.length, NO_ENTRY);
+        }
+
+        final var newEntry = new SymbolTableEntry(size, identifierPool.getName(identifierId));
+        entries[size] = newEntry;
+        depthOfEntry[size] = scopeDepth;
+        entryOfIdentifier[identifierId] = size;
+        size++;
+        return newEntry;
+    }
+
+    /**
+     * 进入一个新的 (嵌套的) 作用域
+     */
+    public void enterScope() {
+        if (depth + 1 == scopeMarks.length) {
+            scopeMarks = Arrays.copyOf(scopeMarks, scopeMarks.length * 2);
+        }
+        depth++;
+        scopeMarks[depth] = undoSize;
+    }
+
+    /**
+     * 退出当前作用域, 其中声明的符号不再可见, 被它们遮蔽的外层符号重新可见
+     *
+     * @throws RuntimeException 当前已经是全局作用域
+     */
+    public void exitScope() {
+        if (depth == 0) {
+            throw new RuntimeException("Can NOT exit the global scope");
+        }
+
+        final var mark = scopeMarks[depth];
+        while (undoSize > mark) {
+            undoSize--;
+            entryOfIdentifier[undoIdentifiers[undoSize]] = undoEntries[undoSize];
+        }
+        depth--;
+    }
+
+    /**
+     * @return 当前作用域的嵌套深度, 全局作用域为 0
+     */
+    public int getScopeDepth() {
+        return depth;
+    }
+
+    /**
+     * 在当前作用域中声明符号
+     * <br>
+     * 在全局作用域中声明时, 若该符号已有条目 (比如重复声明), 则直接返回该条目; 在内层作用域中声明时则总是新建条目,
+     * 并遮蔽外层作用域中的同名符号.
+     *
+     * @param identifierId 标识符在 {@link #getIdentifierPool()} 中的编号
+     * @return 该符号在当前作用域中的条目
+     * @throws RuntimeException 该符号已在当前 (内层) 作用域中声明过
+     */
+    public SymbolTableEntry declare(int identifierId) {
+        if (depth == 0) {
+            return has(identifierId) ? get(identifierId) : add(identifierId);
+        }
+
+        final var previous = has(identifierId) ? entryOfIdentifier[identifierId] : NO_ENTRY;
+        if (previous != NO_ENTRY && depthOfEntry[previous] == depth) {
+            throw new RuntimeException("Symbol '" + identifierPool.getName(identifierId) + "' already declared in this scope.");
+        }
+
+        if (undoSize == undoIdentifiers.length) {
+            undoIdentifiers = Arrays.copyOf(undoIdentifiers, undoSize * 2);
+            undoEntries = Arrays.copyOf(undoEntries, undoSize * 2);
+        }
+        undoIdentifiers[undoSize] = identifierId;
+        undoEntries[undoSize] = previous;
+        undoSize++;
+
+        return bind(identifierId, depth);
+    }
+
+    /**
+     * 以标识符编号判断符号表中有无条目
+     *
+     * @param identifierId 标识符在 {@link #getIdentifierPool()} 中的编号
+     * @return 该符号的条目是否位于符号表中
+     */
+    public boolean has(int identifierId) {
+        return identifierId >= 0
+            && identifierId < entryOfIdentifier.length
+            && entryOfIdentifier[identifierId] != NO_ENTRY;
     }
 
     /**
@@ -31,10 +180,11 @@ public class SymbolTable {
      * @throws RuntimeException 该符号在表中不存在
      */
     public SymbolTableEntry get(String text) {
-        if (!symbolTable.containsKey(text)) {
+        final var identifierId = identifierPool.find(text);
+        if (!has(identifierId)) {
             throw new RuntimeException("Symbol '" + text + "' not found in the symbol table.");
         }
-        return symbolTable.get(text);
+        return get(identifierId);
     }
 
     /**
@@ -45,12 +195,7 @@ public class SymbolTable {
      * @throws RuntimeException 该符号已在表中存在
      */
     public SymbolTableEntry add(String text) {
-        if (symbolTable.containsKey(text)) {
-            throw new RuntimeException("Symbol '" + text + "' already exists in the symbol table.");
-        }
-        SymbolTableEntry newEntry = new SymbolTableEntry(text);
-        symbolTable.put(text, newEntry);
-        return newEntry;
+        return add(identifierPool.intern(text));
     }
 
     /**
@@ -60,34 +205,162 @@ public class SymbolTable {
      * @return 该符号的条目是否位于符号表中
      */
     public boolean has(String text) {
-        return symbolTable.containsKey(text);
+        return has(identifierPool.find(text));
     }
 
     /**
-     * 获得符号表的所有条目以供 {@code dumpTable} 使用
+     * 以条目编号获取条目
      *
-     * @return 符号表的所有条目
+     * @param entryId 条目编号, 即条目加入符号表的次序
+     * @return 该编号的条目
      */
-    private Map<String, SymbolTableEntry> getAllEntries() {
-        return symbolTable;
+    public SymbolTableEntry getEntry(int entryId) {
+        if (entryId < 0 || entryId >= size) {
+            throw new RuntimeException("Entry #" + entryId + " not found in the symbol table.");
+        }
+        return entries[entryId];
+    }
+
+    /**
+     * @return 符号表中的条目个数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 把另一符号表的全局作用域中本表尚没有的符号按其插入顺序加入本表, 用于合并分块并行词法分析得到的符号表
+     * <br>
+     * 另一符号表的标识符池中的标识符也会按编号顺序加入本表的标识符池
+     *
+     * @param other 另一符号表
+     * @return 以另一符号表中的标识符编号为下标, 其在本表中的标识符编号
+     */
+    public int[] mergeFrom(SymbolTable other) {
+        final var otherPool = other.identifierPool;
+        final var identifierIds = new int[otherPool.size()];
+        for (int otherId = 0; otherId < identifierIds.length; otherId++) {
+            identifierIds[otherId] = identifierPool.intern(otherPool.getName(otherId));
+        }
+
+        for (int entryId = 0; entryId < other.size; entryId++) {
+            if (other.depthOfEntry[entryId] != 0) {
+                continue;
+            }
+            final var text = other.entries[entryId].getText();
+            if (!has(text)) {
+                add(text);
+            }
+        }
+
+        return identifierIds;
     }
 
     /**
-     * 将符号表按格式输出
+     * 获得按名字排序的所有条目的编号以供 {@code dumpTable} 使用
+     * <br>
+     * 只对上次调用之后新加入的条目排序, 再与之前已排好序的条目归并
+     *
+     * @return 按名字排序的条目编号, 前 {@link #size()} 个有效
+     */
+    private int[] getSortedEntryIds() {
+        if (sortedCount == size) {
+            return sorted;
+        }
+
+        // 对新加入的条目排序
+        final var appended = new ArrayList<SymbolTableEntry>(size - sortedCount);
+        for (int entryId = sortedCount; entryId < size; entryId++) {
+            appended.add(entries[entryId]);
+        }
+        appended.sort(Comparator.comparing(SymbolTableEntry::getText));
+
+        // 与已排好序的部分归并
+        final var merged = new int[size];
+        int i = 0, j = 0, k = 0;
+        while (i < sortedCount && j < appended.size()) {
+            final var lhs = entries[sorted[i]];
+            final var rhs = appended.get(j);
+            if (lhs.getText().compareTo(rhs.getText()) <= 0) {
+                merged[k++] = sorted[i++];
+            } else {
+                merged[k++] = appended.get(j++).getId();
+            }
+        }
+        while (i < sortedCount) {
+            merged[k++] = sorted[i++];
+        }
+        while (j < appended.size()) {
+            merged[k++] = appended.get(j++).getId();
+        }
+
+        sorted = merged;
+        sortedCount = size;
+        return sorted;
+    }
+
+    /**
+     * 将符号表的全局作用域按格式输出
      *
      * @param path 输出文件路径
      */
     public void dumpTable(String path) {
-        final var entriesInOrder = new ArrayList<>(getAllEntries().values());
-        entriesInOrder.sort(Comparator.comparing(SymbolTableEntry::getText));
+        final var entriesInOrder = getSortedEntryIds();
 
-        final var lines = new ArrayList<String>();
-        for (final var entry : entriesInOrder) {
-            // null in %s will be "null"
-            lines.add("(%s, %s)".formatted(entry.getText(), entry.getType()));
+        final var lines = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            if (depthOfEntry[entriesInOrder[i]] != 0) {
+                continue;
+            }
+            final var entry = entries[entriesInOrder[i]];
+            // null in string concatenation will be "null"
+            lines.add("(" + entry.getText() + ", " + entry.getType() + ")");
         }
 
         FileUtils.writeLines(path, lines);
     }
-}
 
+    /**
+     * 将词法分析后的符号表按格式输出
+     * <br>
+     * 词法分析只登记标识符, 此时符号表中还没有条目, 因此输出的是标识符池中的所有名字, 类型均未确定
+     *
+     * @param path 输出文件路径
+     */
+    public void dumpIdentifiers(String path) {
+        final var names = new ArrayList<String>(identifierPool.size());
+        for (int identifierId = 0; identifierId < identifierPool.size(); identifierId++) {
+            names.add(identifierPool.getName(identifierId));
+        }
+        names.sort(Comparator.naturalOrder());
+
+        final var lines = new ArrayList<String>(names.size());
+        for (final var name : names) {
+            lines.add("(" + name + ", null)");
+        }
+
+        FileUtils.writeLines(path, lines);
+    }
+
+    private static final int NO_ENTRY = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final IdentifierPool identifierPool;
+    // 按条目编号存放的条目
+    private SymbolTableEntry[] entries = new SymbolTableEntry[INITIAL_CAPACITY];
+    private int size = 0;
+    // 各条目所在作用域的深度
+    private int[] depthOfEntry = new int[INITIAL_CAPACITY];
+    // 以标识符编号为下标的当前可见的条目编号, 不可见的标识符对应 NO_ENTRY
+    private int[] entryOfIdentifier = new int[INITIAL_CAPACITY];
+    // 作用域栈, scopeMarks[d] 为进入第 d 层作用域时撤销日志的长度
+    private int depth = 0;
+    private int[] scopeMarks = new int[8];
+    // 撤销日志: 在内层作用域中声明符号时, 记录该标识符之前的绑定
+    private int[] undoIdentifiers = new int[INITIAL_CAPACITY];
+    private int[] undoEntries = new int[INITIAL_CAPACITY];
+    private int undoSize = 0;
+    // 按名字排序的条目编号, 只有前 sortedCount 个条目被排过序
+    private int[] sorted = new int[0];
+    private int sortedCount = 0;
+}
@@ -5,13 +5,22 @@ package cn.edu.hitsz.compiler.symtab;
  */
 public class SymbolTableEntry {
     /**
+     * @param id   条目在符号表中的编号
      * @param text 符号的文本表示. 对于标识符符号, 该参数应该为标识符文本.
      */
-    public SymbolTableEntry(String text) {
+    public SymbolTableEntry(int id, String text) {
+        this.id = id;
         this.text = text;
         this.type = null;
     }
 
+    /**
+     * @return 条目在符号表中的编号, 即其加入符号表的次序
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * @return 符号的文本表示
      */
@@ -40,6 +49,7 @@ public class SymbolTableEntry {
         this.type = type;
     }
 
+    private final int id;
     private final String text;
     private SourceCodeType type;
 }
@@ -62,6 +62,11 @@ public final class FilePathConfig {
      */
     public static final String ASSEMBLY_LANGUAGE_PATH = "data/out/assembly_language.asm";
 
+    /**
+     * LR 分析表的二进制缓存
+     */
+    public static final String LR_TABLE_CACHE_PATH = "data/out/lr_table.bin";
+
     private FilePathConfig() {
     }
 }
@@ -1,10 +1,16 @@
 package cn.edu.hitsz.compiler.utils;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
 
@@ -36,6 +42,52 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * 以 UTF-8 打开文本文件用于流式读取, 调用者负责关闭返回的 Reader
+     *
+     * @param path 文本文件路径
+     * @return 文件的 Reader
+     */
+    public static Reader openReader(String path) {
+        try {
+            return new InputStreamReader(Files.newInputStream(Paths.get(path)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * 以 UTF-8 打开文本文件用于流式写入, 调用者负责关闭返回的 Writer
+     *
+     * @param path 文本文件路径
+     * @return 文件的 Writer
+     */
+    public static BufferedWriter openWriter(String path) {
+        try {
+            return Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+    }
+
+    /**
+     * 以只读方式把整个文件映射到内存中
+     *
+     * @param path 文件路径
+     * @return 映射出的缓冲区, 在文件通道关闭后依然有效
+     */
+    public static ByteBuffer mapFile(String path) {
+        try (final var channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            final var size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new RuntimeException("File is too large to be mapped: " + path);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+    }
+
     /**
      * 将内容写入指定文件
      *